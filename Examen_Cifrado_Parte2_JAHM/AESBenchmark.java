@@ -0,0 +1,477 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Banco de pruebas de rendimiento de las transformaciones y del cifrado completo
+ *
+ * Cada medición se calienta primero para que el JIT compile la ruta caliente
+ * y luego se repite varias veces; se informa la mediana en ns/op, el caudal
+ * en MB/s cuando la operación procesa datos y los bytes asignados por
+ * operación (sumando todos los hilos, para incluir las tareas paralelas; si
+ * un hilo termina durante una ronda su asignación ya no se puede leer y se
+ * informa n/a).
+ * El resultado de cada operación se acumula en un sumidero volátil para que
+ * el JIT no elimine el trabajo.
+ *
+ * Uso: java AESBenchmark [filtro]   (solo se ejecutan los nombres que contienen el filtro)
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESBenchmark {
+
+    private static final long WARMUP_NANOS = 500_000_000L;
+    private static final long MEASURE_NANOS = 200_000_000L;
+    private static final int MEASURE_ROUNDS = 5;
+    private static final long MULTI_BLOCK_WARMUP_NANOS = 3_000_000_000L;
+
+    // Claves por lote en la medición de AESKeyBatch (ns/op es por lote completo)
+    private static final int KEY_BATCH = 1024;
+
+    // Tamaños de datos para los modos de operación
+    private static final int[] BULK_SIZES = { 1024, 64 * 1024, 16 * 1024 * 1024 };
+
+    private static volatile long sink;
+
+    /**
+     * Una operación medible; devuelve un valor derivado del resultado
+     */
+    @FunctionalInterface
+    interface Workload {
+        long run(long ops) throws Exception;
+    }
+
+    private static final class Result {
+        final String name;
+        final double nsPerOp;
+        final double bytesPerSec;
+        final double allocPerOp;
+
+        Result(String name, double nsPerOp, double bytesPerSec, double allocPerOp) {
+            this.name = name;
+            this.nsPerOp = nsPerOp;
+            this.bytesPerSec = bytesPerSec;
+            this.allocPerOp = allocPerOp;
+        }
+    }
+
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+
+    private AESBenchmark(String filter) {
+        this.filter = filter;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AESBenchmark bench = new AESBenchmark(args.length > 0 ? args[0] : "");
+        bench.runAll();
+        bench.print();
+    }
+
+    private void runAll() throws Exception {
+        Random random = new Random(42);
+        byte[] key128 = new byte[16];
+        byte[] key256 = new byte[32];
+        random.nextBytes(key128);
+        random.nextBytes(key256);
+        AESKey k128 = AESEngine.expandKey(key128);
+        AESKey k256 = AESEngine.expandKey(key256);
+        byte[] block = new byte[AESEngine.BLOCK_SIZE];
+        random.nextBytes(block);
+        int[] roundWords = k128.w;
+
+        // Transformaciones individuales
+        measure("SubWord", 0, ops -> {
+            int x = 0x01234567;
+            for (long i = 0; i < ops; i++) {
+                x = AESEngine.SubWord(x) ^ (int) i;
+            }
+            return x;
+        });
+        measure("RotWord", 0, ops -> {
+            int x = 0x01234567;
+            for (long i = 0; i < ops; i++) {
+                x = AESEngine.RotWord(x) ^ (int) i;
+            }
+            return x;
+        });
+        measure("gmul", 0, ops -> {
+            int x = 0x57;
+            for (long i = 0; i < ops; i++) {
+                x = AESEngine.gmul(x, 0x83 | ((int) i & 0x7C)) ^ 1;
+            }
+            return x;
+        });
+        measure("expandKey (AES-128)", 0, ops -> {
+            long acc = 0;
+            for (long i = 0; i < ops; i++) {
+                key128[0] = (byte) i;
+                acc += AESEngine.expandKey(key128).w[43];
+            }
+            return acc;
+        });
+        measure("expandKey (AES-256)", 0, ops -> {
+            long acc = 0;
+            for (long i = 0; i < ops; i++) {
+                key256[0] = (byte) i;
+                acc += AESEngine.expandKey(key256).w[59];
+            }
+            return acc;
+        });
+        byte[] keyMaterial = new byte[KEY_BATCH * key128.length];
+        random.nextBytes(keyMaterial);
+        measure("AESKeyBatch " + KEY_BATCH + " keys (AES-128)", 0, ops -> {
+            long acc = 0;
+            for (long i = 0; i < ops; i++) {
+                keyMaterial[0] = (byte) i;
+                acc += AESKeyBatch.expand(keyMaterial, key128.length).word(KEY_BATCH - 1, 43);
+            }
+            return acc;
+        });
+        measure("expandKey bitsliced (AES-128)", 0, ops -> {
+            long acc = 0;
+            for (long i = 0; i < ops; i++) {
+                key128[0] = (byte) i;
+                acc += AESBitslicedEngine.expandKey(key128).w[43];
+            }
+            return acc;
+        });
+
+        byte[] flat = block.clone();
+        measure("subBytes (in place)", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESEngine.subBytes(flat, 0);
+            }
+            return flat[0];
+        });
+        measure("shiftRows (in place)", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESEngine.shiftRows(flat, 0);
+            }
+            return flat[1];
+        });
+        measure("mixColumns (in place)", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESEngine.mixColumns(flat, 0);
+            }
+            return flat[2];
+        });
+        measure("addRoundKey (in place)", 0, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESEngine.addRoundKey(flat, 0, roundWords, 1);
+            }
+            return flat[3];
+        });
+
+        byte[][] state = AESEngine.toState(block, 0);
+        measure("subBytes (state)", 0, ops -> {
+            byte[][] s = state;
+            for (long i = 0; i < ops; i++) {
+                s = AESEngine.subBytes(s);
+            }
+            return s[0][0];
+        });
+        measure("shiftRows (state)", 0, ops -> {
+            byte[][] s = state;
+            for (long i = 0; i < ops; i++) {
+                s = AESEngine.shiftRows(s);
+            }
+            return s[1][0];
+        });
+        measure("mixColumns (state)", 0, ops -> {
+            byte[][] s = state;
+            for (long i = 0; i < ops; i++) {
+                s = AESEngine.mixColumns(s);
+            }
+            return s[2][0];
+        });
+        measure("addRoundKey (state)", 0, ops -> {
+            byte[][] s = state;
+            for (long i = 0; i < ops; i++) {
+                s = AESEngine.addRoundKey(s, roundWords, 1);
+            }
+            return s[3][0];
+        });
+
+        // Bloque completo
+        measure("encryptBlock reference", AESEngine.BLOCK_SIZE, ops -> {
+            byte[] b = block;
+            for (long i = 0; i < ops; i++) {
+                b = AESEngine.encryptBlock(k128, b);
+            }
+            return b[0];
+        });
+        byte[] inPlace = block.clone();
+        measure("encryptBlockInPlace", AESEngine.BLOCK_SIZE, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESEngine.encryptBlockInPlace(k128, inPlace, 0);
+            }
+            return inPlace[0];
+        });
+        measure("T-table encrypt (AES-128)", AESEngine.BLOCK_SIZE, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESTableEngine.encryptBlock(k128, inPlace, 0, inPlace, 0);
+            }
+            return inPlace[0];
+        });
+        measure("T-table encrypt (AES-256)", AESEngine.BLOCK_SIZE, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESTableEngine.encryptBlock(k256, inPlace, 0, inPlace, 0);
+            }
+            return inPlace[0];
+        });
+        measure("T-table decrypt (AES-128)", AESEngine.BLOCK_SIZE, ops -> {
+            for (long i = 0; i < ops; i++) {
+                AESTableEngine.decryptBlock(k128, inPlace, 0, inPlace, 0);
+            }
+            return inPlace[0];
+        });
+
+        // Modos de operación sobre datos de distintos tamaños
+        byte[] iv = new byte[AESEngine.BLOCK_SIZE];
+        warmUpMultiBlock(k128, iv);
+        byte[] gcmIv = new byte[12];
+        AESGcmMode gcm = new AESGcmMode(k128);
+        for (int size : BULK_SIZES) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            String label = formatSize(size);
+
+            measure("CTR " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    if (size >= AESCtrMode.PARALLEL_THRESHOLD) {
+                        AESCtrMode.processParallel(k128, iv, data, 0, data, 0, size);
+                    } else {
+                        AESCtrMode.process(k128, iv, data, 0, data, 0, size);
+                    }
+                }
+                return data[0];
+            });
+            measure("CTR bitsliced " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESBitslicedEngine.processCtr(k128, iv, data, 0, data, 0, size);
+                }
+                return data[0];
+            });
+            measure("ECB bitsliced " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESBitslicedEngine.encryptBlocks(k128, data, 0, data, 0, size);
+                }
+                return data[0];
+            });
+            measure("ECB T-table " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    for (int off = 0; off < size; off += AESEngine.BLOCK_SIZE) {
+                        AESTableEngine.encryptBlock(k128, data, off, data, off);
+                    }
+                }
+                return data[0];
+            });
+            measure("ECB T-table x4 " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESTableEngine.encryptBlocks(k128, data, 0, data, 0, size);
+                }
+                return data[0];
+            });
+            ByteBuffer direct = ByteBuffer.allocateDirect(size);
+            direct.put(data).clear();
+            measure("ECB T-table direct ByteBuffer " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESTableEngine.encryptBlocks(k128, direct, 0, direct, 0, size);
+                }
+                return direct.get(0);
+            });
+            measure("CTR direct ByteBuffer " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    direct.clear();
+                    ByteBuffer src = direct.duplicate();
+                    AESCtrMode.process(k128, iv, src, direct);
+                }
+                return direct.get(0);
+            });
+            measure("ECB multi-block (" + AESMultiBlock.engineName() + ") " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESMultiBlock.encryptBlocks(k128, data, 0, data, 0, size);
+                }
+                return data[0];
+            });
+            measure("CBC encrypt " + label, size, ops -> {
+                AESCipher cbc = new AESCipher(AESCipher.Mode.CBC, true, k128, iv, false);
+                for (long i = 0; i < ops; i++) {
+                    cbc.doFinal(data, 0, size, data, 0);
+                }
+                return data[0];
+            });
+            measure("CBC decrypt " + label, size, ops -> {
+                AESCipher cbc = new AESCipher(AESCipher.Mode.CBC, false, k128, iv, false);
+                for (long i = 0; i < ops; i++) {
+                    cbc.doFinal(data, 0, size, data, 0);
+                }
+                return data[0];
+            });
+            measure("GCM encrypt " + label, size, ops -> {
+                for (long i = 0; i < ops; i++) {
+                    AESGcmMode.Session s = gcm.start(gcmIv, null, true);
+                    s.update(data, 0, size, data, 0);
+                    sink += s.finish()[0];
+                }
+                return data[0];
+            });
+        }
+    }
+
+    /**
+     * El código vectorial de {@link AESMultiBlock} tarda bastante más que el
+     * escalar en llegar a C2; mientras tanto los vectores se materializan como
+     * objetos y el calentamiento normal de cada medición no alcanza
+     */
+    private static void warmUpMultiBlock(AESKey key, byte[] iv) {
+        byte[] data = new byte[64 * 1024];
+        long end = System.nanoTime() + MULTI_BLOCK_WARMUP_NANOS;
+        while (System.nanoTime() < end) {
+            AESMultiBlock.encryptBlocks(key, data, 0, data, 0, data.length);
+            AESMultiBlock.decryptBlocks(key, data, 0, data, 0, data.length);
+            AESCtrMode.process(key, iv, data, 0, data, 0, data.length);
+        }
+        sink += data[0];
+    }
+
+    /**
+     * Calienta, calibra el número de operaciones y mide varias rondas
+     * @param bytesPerOp Bytes procesados por operación (0 si no aplica)
+     */
+    private void measure(String name, int bytesPerOp, Workload workload) throws Exception {
+        if (!name.toLowerCase().contains(filter.toLowerCase())) {
+            return;
+        }
+
+        // Calentamiento: duplicar operaciones hasta cubrir el tiempo de calentamiento
+        long ops = 1;
+        long warmStart = System.nanoTime();
+        while (System.nanoTime() - warmStart < WARMUP_NANOS) {
+            long t0 = System.nanoTime();
+            sink += workload.run(ops);
+            if (System.nanoTime() - t0 < MEASURE_NANOS / 4) {
+                ops *= 2;
+            }
+        }
+        // Ajustar para que cada ronda dure aproximadamente MEASURE_NANOS
+        long t0 = System.nanoTime();
+        sink += workload.run(ops);
+        long elapsed = Math.max(1, System.nanoTime() - t0);
+        ops = Math.max(1, (long) (ops * (double) MEASURE_NANOS / elapsed));
+
+        double[] nsPerOp = new double[MEASURE_ROUNDS];
+        long allocated = 0;
+        for (int r = 0; r < MEASURE_ROUNDS; r++) {
+            AllocationSnapshot a0 = AllocationSnapshot.take();
+            long start = System.nanoTime();
+            sink += workload.run(ops);
+            long end = System.nanoTime();
+            long bytes = AllocationSnapshot.allocatedSince(a0);
+            allocated = allocated < 0 || bytes < 0 ? -1 : allocated + bytes;
+            nsPerOp[r] = (double) (end - start) / ops;
+        }
+        Arrays.sort(nsPerOp);
+        double median = nsPerOp[MEASURE_ROUNDS / 2];
+        double bytesPerSec = bytesPerOp > 0 ? bytesPerOp * 1e9 / median : 0;
+        double allocPerOp = allocated >= 0 ? (double) allocated / (ops * MEASURE_ROUNDS) : -1;
+
+        results.add(new Result(name, median, bytesPerSec, allocPerOp));
+        System.err.printf("  %s done%n", name);
+    }
+
+    /**
+     * Bytes asignados hasta un instante por cada hilo vivo
+     *
+     * Al terminar un hilo (por ejemplo un trabajador del ForkJoinPool común)
+     * la JVM deja de informar de su contador, así que restar dos sumas totales
+     * perdería lo que asignó y podría dar un resultado bajo o negativo. Por eso
+     * se compara hilo a hilo y la medida se descarta si alguno desaparece.
+     */
+    private static final class AllocationSnapshot {
+        final long[] ids;
+        final long[] bytes;
+
+        private AllocationSnapshot(long[] ids, long[] bytes) {
+            this.ids = ids;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return La instantánea actual, o null si la JVM no mide la asignación por hilo
+         */
+        static AllocationSnapshot take() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) {
+                return null;
+            }
+            long[] ids = bean.getAllThreadIds();
+            return new AllocationSnapshot(ids, sun.getThreadAllocatedBytes(ids));
+        }
+
+        /**
+         * @return Bytes asignados por todos los hilos desde la instantánea, o -1 si
+         *         no se pueden medir o algún hilo vivo entonces ha terminado
+         */
+        static long allocatedSince(AllocationSnapshot before) {
+            AllocationSnapshot after = take();
+            if (before == null || after == null) {
+                return -1;
+            }
+            long total = 0;
+            for (int i = 0; i < after.ids.length; i++) {
+                if (after.bytes[i] >= 0) {
+                    // Un hilo creado durante la ronda empieza en cero
+                    total += after.bytes[i] - Math.max(0, before.bytesOf(after.ids[i]));
+                }
+            }
+            for (int i = 0; i < before.ids.length; i++) {
+                if (before.bytes[i] >= 0 && after.bytesOf(before.ids[i]) < 0) {
+                    return -1;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * @return Bytes del hilo, o -1 si no estaba vivo en la instantánea
+         */
+        long bytesOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return bytes[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    private void print() {
+        int width = "Benchmark".length();
+        for (Result r : results) {
+            width = Math.max(width, r.name.length());
+        }
+        String name = "%-" + width + "s";
+        System.out.printf(name + " %14s %12s %12s%n", "Benchmark", "ns/op", "MB/s", "B/op alloc");
+        for (Result r : results) {
+            System.out.printf(name + " %14.1f %12s %12s%n", r.name, r.nsPerOp,
+                r.bytesPerSec > 0 ? String.format("%.1f", r.bytesPerSec / 1e6) : "-",
+                r.allocPerOp >= 0 ? String.format("%.1f", r.allocPerOp) : "n/a");
+        }
+        System.out.printf("(JVM %s, %d processors)%n", System.getProperty("java.version"),
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    private static String formatSize(int size) {
+        return size >= 1024 * 1024 ? (size / (1024 * 1024)) + " MB" : (size / 1024) + " KB";
+    }
+}
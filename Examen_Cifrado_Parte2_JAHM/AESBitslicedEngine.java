@@ -0,0 +1,621 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Motor AES en representación bitsliced de tiempo constante
+ *
+ * SubWord, subBytes y las tablas T indexan tablas con direcciones que
+ * dependen de la clave y de los datos, lo que filtra información por el
+ * canal lateral de la caché. Este motor procesa 64 bloques a la vez: el bit
+ * b del byte p de los 64 bloques se guarda en un solo long (un carril por
+ * bloque), de modo que el estado son 128 longs y cada transformación se
+ * reduce a operaciones booleanas sobre ellos. La S-box es el circuito de
+ * Boyar y Peralta (113 puertas); ShiftRows es una permutación de índices
+ * fijos; MixColumns y AddRoundKey solo usan XOR y máscaras. Ningún acceso a
+ * memoria ni salto depende de la clave o de los datos.
+ *
+ * La expansión de clave usa el mismo circuito, así que el calendario se
+ * obtiene también en tiempo constante; el resultado es idéntico al de
+ * {@link AESEngine#expandKey(byte[])} y se puede usar con cualquier motor.
+ * Los lotes incompletos se rellenan con ceros: el tiempo solo depende de la
+ * longitud de los datos.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESBitslicedEngine {
+
+    // Bloques procesados en paralelo, uno por bit de un long
+    public static final int LANES = 64;
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+    private static final int BATCH_BYTES = LANES * BLOCK;
+    private static final int SLICES = 8 * BLOCK;
+
+    // Tamaño mínimo de cada tramo paralelo (múltiplo del lote)
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    // Byte de origen de cada posición del estado (4c + r) tras ShiftRows y tras InvShiftRows
+    private static final int[] SHIFT_ROWS = new int[BLOCK];
+    private static final int[] INV_SHIFT_ROWS = new int[BLOCK];
+    private static final int[] IDENTITY = new int[BLOCK];
+
+    static {
+        for (int c = 0; c < 4; c++) {
+            for (int r = 0; r < 4; r++) {
+                SHIFT_ROWS[4 * c + r] = 4 * ((c + r) & 3) + r;
+                INV_SHIFT_ROWS[4 * c + r] = 4 * ((c - r) & 3) + r;
+                IDENTITY[4 * c + r] = 4 * c + r;
+            }
+        }
+    }
+
+    /**
+     * Estado y búfer de trabajo de un hilo
+     */
+    private static final class Workspace {
+        final long[] s = new long[SLICES];
+        final long[] t = new long[SLICES];
+        final long[] u = new long[8];
+        final long[] v = new long[8];
+        final byte[] blocks = new byte[BATCH_BYTES];
+    }
+
+    private AESBitslicedEngine() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Expansión de clave (FIPS-197, sección 5.2) sin tablas dependientes de la clave
+     * @param key La clave de entrada de 16, 24 o 32 bytes
+     * @return La clave expandida, igual a la de {@link AESEngine#expandKey(byte[])}
+     */
+    public static AESKey expandKey(byte[] key) {
+        if (key == null || !AESEngine.isValidKeyLength(key.length)) {
+            throw new IllegalArgumentException(
+                "Invalid key length. A 128, 192 or 256-bit key (16, 24 or 32 bytes) is required.");
+        }
+
+        int nk = key.length / 4;
+        int nr = AESEngine.rounds(nk);
+        int[] w = new int[4 * (nr + 1)];
+        long[] q = new long[8];
+
+        for (int i = 0; i < nk; i++) {
+            w[i] = AESTableEngine.getWord(key, 4 * i);
+        }
+        for (int i = nk; i < w.length; i++) {
+            int temp = w[i-1];
+            if (i % nk == 0) {
+                // El índice de Rcon depende solo de la posición, no de la clave
+                temp = subWord(AESEngine.RotWord(temp), q) ^ AESEngine.RCON[i/nk - 1];
+            } else if (nk > 6 && i % nk == 4) {
+                temp = subWord(temp, q);
+            }
+            w[i] = w[i-nk] ^ temp;
+        }
+        return new AESKey(nk, nr, w);
+    }
+
+    /**
+     * Cifra en modo ECB; usa todos los núcleos si los datos son grandes
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkBlocks(in, inOff, out, outOff, len);
+        long[] rk = roundKeyMasks(key);
+        forChunks(len, (start, n) -> ecb(key.nr, rk, true, in, inOff + start, out, outOff + start, n));
+    }
+
+    /**
+     * Descifra en modo ECB; usa todos los núcleos si los datos son grandes
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkBlocks(in, inOff, out, outOff, len);
+        long[] rk = roundKeyMasks(key);
+        forChunks(len, (start, n) -> ecb(key.nr, rk, false, in, inOff + start, out, outOff + start, n));
+    }
+
+    /**
+     * Cifra o descifra en modo CTR con contador big-endian de 128 bits,
+     * con el mismo resultado que {@link AESCtrMode#process(AESKey, byte[], byte[])}
+     * @param iv Bloque contador inicial de 16 bytes
+     * @param len Número de bytes a procesar (cualquier longitud)
+     */
+    public static void processCtr(AESKey key, byte[] iv, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (iv == null || iv.length != BLOCK) {
+            throw new IllegalArgumentException("Invalid counter block. A 16-byte initial counter is required.");
+        }
+        checkRange(in, inOff, out, outOff, len);
+        long[] rk = roundKeyMasks(key);
+        long hi = AESCtrMode.counterHigh(iv);
+        long lo = AESCtrMode.counterLow(iv);
+        forChunks(len, (start, n) ->
+            ctr(key.nr, rk, hi, lo, start / BLOCK, in, inOff + start, out, outOff + start, n));
+    }
+
+    /**
+     * Cifra o descifra un arreglo completo en modo CTR
+     */
+    public static byte[] processCtr(AESKey key, byte[] iv, byte[] input) {
+        byte[] output = new byte[input.length];
+        processCtr(key, iv, input, 0, output, 0, input.length);
+        return output;
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        void process(int start, int len);
+    }
+
+    /**
+     * Reparte tramos contiguos, múltiplos del lote, entre los hilos del ForkJoinPool común
+     */
+    private static void forChunks(int len, Chunk chunk) {
+        if (len < AESCtrMode.PARALLEL_THRESHOLD) {
+            chunk.process(0, len);
+            return;
+        }
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int size = Math.max(MIN_CHUNK, len / (parallelism * 4));
+        int step = (size + BATCH_BYTES - 1) / BATCH_BYTES * BATCH_BYTES;
+        int chunks = (len + step - 1) / step;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = c * step;
+            chunk.process(start, Math.min(step, len - start));
+        });
+    }
+
+    private static void ecb(int nr, long[] rk, boolean encrypt, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        Workspace ws = new Workspace();
+        for (int done = 0; done < len; done += BATCH_BYTES) {
+            int n = Math.min(BATCH_BYTES, len - done);
+            pack(in, inOff + done, n / BLOCK, ws.s);
+            long[] result = encrypt ? encrypt(nr, rk, ws) : decrypt(nr, rk, ws);
+            unpack(result, n / BLOCK, out, outOff + done);
+        }
+    }
+
+    private static void ctr(int nr, long[] rk, long hi, long lo, long firstBlock,
+                            byte[] in, int inOff, byte[] out, int outOff, int len) {
+        Workspace ws = new Workspace();
+        long ctrLo = lo + firstBlock;
+        long ctrHi = Long.compareUnsigned(ctrLo, lo) < 0 ? hi + 1 : hi;
+
+        for (int done = 0; done < len; done += BATCH_BYTES) {
+            int n = Math.min(BATCH_BYTES, len - done);
+            int blocks = (n + BLOCK - 1) / BLOCK;
+            for (int b = 0; b < blocks; b++) {
+                AESCtrMode.putLong(ctrHi, ws.blocks, b * BLOCK);
+                AESCtrMode.putLong(ctrLo, ws.blocks, b * BLOCK + 8);
+                if (++ctrLo == 0) {
+                    ctrHi++;
+                }
+            }
+            pack(ws.blocks, 0, blocks, ws.s);
+            unpack(encrypt(nr, rk, ws), blocks, ws.blocks, 0);
+            for (int i = 0; i < n; i++) {
+                out[outOff + done + i] = (byte) (in[inOff + done + i] ^ ws.blocks[i]);
+            }
+        }
+    }
+
+    /**
+     * Cifra los 64 carriles de ws.s
+     * @return El arreglo que contiene el resultado (ws.s o ws.t)
+     */
+    private static long[] encrypt(int nr, long[] rk, Workspace ws) {
+        long[] s = ws.s;
+        long[] t = ws.t;
+        addRoundKey(s, rk, 0);
+        for (int round = 1; round < nr; round++) {
+            subBytes(s);
+            mixColumns(s, t, SHIFT_ROWS);       // ShiftRows y MixColumns en un solo paso
+            addRoundKey(t, rk, round);
+            long[] tmp = s;
+            s = t;
+            t = tmp;
+        }
+        subBytes(s);
+        permute(s, t, SHIFT_ROWS);
+        addRoundKey(t, rk, nr);
+        return t;
+    }
+
+    /**
+     * Descifra los 64 carriles de ws.s con el cifrado inverso (FIPS-197, sección 5.3)
+     * @return El arreglo que contiene el resultado (ws.t)
+     */
+    private static long[] decrypt(int nr, long[] rk, Workspace ws) {
+        long[] s = ws.s;
+        long[] t = ws.t;
+        addRoundKey(s, rk, nr);
+        for (int round = nr - 1; round > 0; round--) {
+            permute(s, t, INV_SHIFT_ROWS);
+            invSubBytes(t);
+            addRoundKey(t, rk, round);
+            invMixColumnsPre(t, ws.u, ws.v);
+            mixColumns(t, s, IDENTITY);
+        }
+        permute(s, t, INV_SHIFT_ROWS);
+        invSubBytes(t);
+        addRoundKey(t, rk, 0);
+        return t;
+    }
+
+    /**
+     * Máscaras de las claves de ronda: cada bit de clave se extiende a un long
+     * completo (0 o -1) sin saltos, para aplicarlo a los 64 carriles con un XOR
+     */
+    private static long[] roundKeyMasks(AESKey key) {
+        long[] rk = new long[(key.nr + 1) * SLICES];
+        for (int round = 0; round <= key.nr; round++) {
+            for (int p = 0; p < BLOCK; p++) {
+                int k = key.roundKeyByte(round, p);
+                for (int b = 0; b < 8; b++) {
+                    rk[round * SLICES + 8 * p + b] = -(long) ((k >>> b) & 1);
+                }
+            }
+        }
+        return rk;
+    }
+
+    private static void addRoundKey(long[] s, long[] rk, int round) {
+        int base = round * SLICES;
+        for (int i = 0; i < SLICES; i++) {
+            s[i] ^= rk[base + i];
+        }
+    }
+
+    private static void subBytes(long[] s) {
+        for (int off = 0; off < SLICES; off += 8) {
+            sbox(s, off);
+        }
+    }
+
+    private static void invSubBytes(long[] s) {
+        for (int off = 0; off < SLICES; off += 8) {
+            invSbox(s, off);
+        }
+    }
+
+    /**
+     * Copia el estado reordenando los bytes: dst[p] = src[perm[p]]
+     */
+    private static void permute(long[] src, long[] dst, int[] perm) {
+        for (int p = 0; p < BLOCK; p++) {
+            System.arraycopy(src, 8 * perm[p], dst, 8 * p, 8);
+        }
+    }
+
+    /**
+     * MixColumns sobre el estado reordenado por {@code perm}: cada byte de salida es
+     * xtime(a ^ b) ^ b ^ c ^ d, donde a..d son los bytes de la columna a partir de su fila
+     */
+    private static void mixColumns(long[] src, long[] dst, int[] perm) {
+        for (int c = 0; c < 4; c++) {
+            for (int r = 0; r < 4; r++) {
+                int a = 8 * perm[4 * c + r];
+                int b = 8 * perm[4 * c + ((r + 1) & 3)];
+                int cc = 8 * perm[4 * c + ((r + 2) & 3)];
+                int d = 8 * perm[4 * c + ((r + 3) & 3)];
+                int o = 8 * (4 * c + r);
+
+                // xtime en bits: desplazamiento y reducción por 0x1B con el bit alto
+                long carry = src[a + 7] ^ src[b + 7];
+                dst[o]     = carry                         ^ src[b]     ^ src[cc]     ^ src[d];
+                dst[o + 1] = src[a] ^ src[b] ^ carry       ^ src[b + 1] ^ src[cc + 1] ^ src[d + 1];
+                dst[o + 2] = src[a + 1] ^ src[b + 1]       ^ src[b + 2] ^ src[cc + 2] ^ src[d + 2];
+                dst[o + 3] = src[a + 2] ^ src[b + 2] ^ carry ^ src[b + 3] ^ src[cc + 3] ^ src[d + 3];
+                dst[o + 4] = src[a + 3] ^ src[b + 3] ^ carry ^ src[b + 4] ^ src[cc + 4] ^ src[d + 4];
+                dst[o + 5] = src[a + 4] ^ src[b + 4]       ^ src[b + 5] ^ src[cc + 5] ^ src[d + 5];
+                dst[o + 6] = src[a + 5] ^ src[b + 5]       ^ src[b + 6] ^ src[cc + 6] ^ src[d + 6];
+                dst[o + 7] = src[a + 6] ^ src[b + 6]       ^ src[b + 7] ^ src[cc + 7] ^ src[d + 7];
+            }
+        }
+    }
+
+    /**
+     * Paso previo de InvMixColumns: con u = 4·(a0 ^ a2) y v = 4·(a1 ^ a3),
+     * InvMixColumns(a) = MixColumns(a0 ^ u, a1 ^ v, a2 ^ u, a3 ^ v)
+     */
+    private static void invMixColumnsPre(long[] s, long[] u, long[] v) {
+        for (int c = 0; c < 4; c++) {
+            int o = 32 * c;
+            for (int b = 0; b < 8; b++) {
+                u[b] = s[o + b] ^ s[o + 16 + b];
+                v[b] = s[o + 8 + b] ^ s[o + 24 + b];
+            }
+            xtime(u);
+            xtime(u);
+            xtime(v);
+            xtime(v);
+            for (int b = 0; b < 8; b++) {
+                s[o + b] ^= u[b];
+                s[o + 8 + b] ^= v[b];
+                s[o + 16 + b] ^= u[b];
+                s[o + 24 + b] ^= v[b];
+            }
+        }
+    }
+
+    private static void xtime(long[] x) {
+        long hi = x[7];
+        x[7] = x[6];
+        x[6] = x[5];
+        x[5] = x[4];
+        x[4] = x[3] ^ hi;
+        x[3] = x[2] ^ hi;
+        x[2] = x[1];
+        x[1] = x[0] ^ hi;
+        x[0] = hi;
+    }
+
+    /**
+     * SubWord de tiempo constante: los 4 bytes de la palabra ocupan 4 carriles del circuito
+     */
+    private static int subWord(int word, long[] q) {
+        for (int b = 0; b < 8; b++) {
+            long slice = 0;
+            for (int j = 0; j < 4; j++) {
+                slice |= (long) ((word >>> (8 * j + b)) & 1) << j;
+            }
+            q[b] = slice;
+        }
+        sbox(q, 0);
+        int result = 0;
+        for (int b = 0; b < 8; b++) {
+            for (int j = 0; j < 4; j++) {
+                result |= (int) ((q[b] >>> j) & 1) << (8 * j + b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convierte hasta 64 bloques a la representación bitsliced
+     * Para cada posición de byte, los bytes de 8 bloques forman una matriz de
+     * bits de 8x8 que se traspone, y cada fila traspuesta es un byte del carril.
+     */
+    private static void pack(byte[] in, int inOff, int blocks, long[] s) {
+        Arrays.fill(s, 0L);
+        for (int p = 0; p < BLOCK; p++) {
+            for (int g = 0; g < LANES / 8; g++) {
+                long x = 0;
+                for (int i = 0; i < 8; i++) {
+                    int block = 8 * g + i;
+                    if (block < blocks) {
+                        x |= (long) (in[inOff + BLOCK * block + p] & 0xFF) << (8 * i);
+                    }
+                }
+                x = transpose8(x);
+                for (int b = 0; b < 8; b++) {
+                    s[8 * p + b] |= ((x >>> (8 * b)) & 0xFF) << (8 * g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Operación inversa de {@link #pack}; solo escribe los primeros {@code blocks} bloques
+     */
+    private static void unpack(long[] s, int blocks, byte[] out, int outOff) {
+        for (int p = 0; p < BLOCK; p++) {
+            for (int g = 0; g < LANES / 8 && 8 * g < blocks; g++) {
+                long x = 0;
+                for (int b = 0; b < 8; b++) {
+                    x |= ((s[8 * p + b] >>> (8 * g)) & 0xFF) << (8 * b);
+                }
+                x = transpose8(x);
+                for (int i = 0; i < 8 && 8 * g + i < blocks; i++) {
+                    out[outOff + BLOCK * (8 * g + i) + p] = (byte) (x >>> (8 * i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Traspone una matriz de bits de 8x8 (bit 8i + j pasa a 8j + i)
+     */
+    private static long transpose8(long x) {
+        long t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+        x = x ^ t ^ (t << 7);
+        t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+        x = x ^ t ^ (t << 14);
+        t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+        return x ^ t ^ (t << 28);
+    }
+
+    /**
+     * S-box de AES como circuito booleano de Boyar y Peralta sobre 8 cortes
+     * q[off] es el bit menos significativo y q[off + 7] el más significativo.
+     */
+    static void sbox(long[] q, int off) {
+        long x0 = q[off + 7];
+        long x1 = q[off + 6];
+        long x2 = q[off + 5];
+        long x3 = q[off + 4];
+        long x4 = q[off + 3];
+        long x5 = q[off + 2];
+        long x6 = q[off + 1];
+        long x7 = q[off];
+
+        // Transformación lineal superior
+        long y14 = x3 ^ x5;
+        long y13 = x0 ^ x6;
+        long y9 = x0 ^ x3;
+        long y8 = x0 ^ x5;
+        long t0 = x1 ^ x2;
+        long y1 = t0 ^ x7;
+        long y4 = y1 ^ x3;
+        long y12 = y13 ^ y14;
+        long y2 = y1 ^ x0;
+        long y5 = y1 ^ x6;
+        long y3 = y5 ^ y8;
+        long t1 = x4 ^ y12;
+        long y15 = t1 ^ x5;
+        long y20 = t1 ^ x1;
+        long y6 = y15 ^ x7;
+        long y10 = y15 ^ t0;
+        long y11 = y20 ^ y9;
+        long y7 = x7 ^ y11;
+        long y17 = y10 ^ y11;
+        long y19 = y10 ^ y8;
+        long y16 = t0 ^ y11;
+        long y21 = y13 ^ y16;
+        long y18 = x0 ^ y16;
+
+        // Sección no lineal (inversión en GF(2^8))
+        long t2 = y12 & y15;
+        long t3 = y3 & y6;
+        long t4 = t3 ^ t2;
+        long t5 = y4 & x7;
+        long t6 = t5 ^ t2;
+        long t7 = y13 & y16;
+        long t8 = y5 & y1;
+        long t9 = t8 ^ t7;
+        long t10 = y2 & y7;
+        long t11 = t10 ^ t7;
+        long t12 = y9 & y11;
+        long t13 = y14 & y17;
+        long t14 = t13 ^ t12;
+        long t15 = y8 & y10;
+        long t16 = t15 ^ t12;
+        long t17 = t4 ^ t14;
+        long t18 = t6 ^ t16;
+        long t19 = t9 ^ t14;
+        long t20 = t11 ^ t16;
+        long t21 = t17 ^ y20;
+        long t22 = t18 ^ y19;
+        long t23 = t19 ^ y21;
+        long t24 = t20 ^ y18;
+
+        long t25 = t21 ^ t22;
+        long t26 = t21 & t23;
+        long t27 = t24 ^ t26;
+        long t28 = t25 & t27;
+        long t29 = t28 ^ t22;
+        long t30 = t23 ^ t24;
+        long t31 = t22 ^ t26;
+        long t32 = t31 & t30;
+        long t33 = t32 ^ t24;
+        long t34 = t23 ^ t33;
+        long t35 = t27 ^ t33;
+        long t36 = t24 & t35;
+        long t37 = t36 ^ t34;
+        long t38 = t27 ^ t36;
+        long t39 = t29 & t38;
+        long t40 = t25 ^ t39;
+
+        long t41 = t40 ^ t37;
+        long t42 = t29 ^ t33;
+        long t43 = t29 ^ t40;
+        long t44 = t33 ^ t37;
+        long t45 = t42 ^ t41;
+        long z0 = t44 & y15;
+        long z1 = t37 & y6;
+        long z2 = t33 & x7;
+        long z3 = t43 & y16;
+        long z4 = t40 & y1;
+        long z5 = t29 & y7;
+        long z6 = t42 & y11;
+        long z7 = t45 & y17;
+        long z8 = t41 & y10;
+        long z9 = t44 & y12;
+        long z10 = t37 & y3;
+        long z11 = t33 & y4;
+        long z12 = t43 & y13;
+        long z13 = t40 & y5;
+        long z14 = t29 & y2;
+        long z15 = t42 & y9;
+        long z16 = t45 & y14;
+        long z17 = t41 & y8;
+
+        // Transformación lineal inferior (incluye la constante 0x63)
+        long t46 = z15 ^ z16;
+        long t47 = z10 ^ z11;
+        long t48 = z5 ^ z13;
+        long t49 = z9 ^ z10;
+        long t50 = z2 ^ z12;
+        long t51 = z2 ^ z5;
+        long t52 = z7 ^ z8;
+        long t53 = z0 ^ z3;
+        long t54 = z6 ^ z7;
+        long t55 = z16 ^ z17;
+        long t56 = z12 ^ t48;
+        long t57 = t50 ^ t53;
+        long t58 = z4 ^ t46;
+        long t59 = z3 ^ t54;
+        long t60 = t46 ^ t57;
+        long t61 = z14 ^ t57;
+        long t62 = t52 ^ t58;
+        long t63 = t49 ^ t58;
+        long t64 = z4 ^ t59;
+        long t65 = t61 ^ t62;
+        long t66 = z1 ^ t63;
+        long s0 = t59 ^ t63;
+        long s6 = t56 ^ ~t62;
+        long s7 = t48 ^ ~t60;
+        long t67 = t64 ^ t65;
+        long s3 = t53 ^ t66;
+        long s4 = t51 ^ t66;
+        long s5 = t47 ^ t65;
+        long s1 = t64 ^ ~s3;
+        long s2 = t55 ^ ~t67;
+
+        q[off + 7] = s0;
+        q[off + 6] = s1;
+        q[off + 5] = s2;
+        q[off + 4] = s3;
+        q[off + 3] = s4;
+        q[off + 2] = s5;
+        q[off + 1] = s6;
+        q[off] = s7;
+    }
+
+    /**
+     * S-box inversa: como S(x) = A(x^-1) ^ 0x63, la inversa es
+     * A^-1(S(A^-1(y ^ 0x63)) ^ 0x63), es decir, la transformación afín inversa
+     * antes y después del mismo circuito
+     */
+    static void invSbox(long[] q, int off) {
+        invAffine(q, off);
+        sbox(q, off);
+        invAffine(q, off);
+    }
+
+    /**
+     * A^-1(y ^ 0x63): bit i = y(i+2) ^ y(i+5) ^ y(i+7), índices módulo 8
+     */
+    private static void invAffine(long[] q, int off) {
+        long q0 = ~q[off];
+        long q1 = ~q[off + 1];
+        long q2 = q[off + 2];
+        long q3 = q[off + 3];
+        long q4 = q[off + 4];
+        long q5 = ~q[off + 5];
+        long q6 = ~q[off + 6];
+        long q7 = q[off + 7];
+        q[off + 7] = q1 ^ q4 ^ q6;
+        q[off + 6] = q0 ^ q3 ^ q5;
+        q[off + 5] = q7 ^ q2 ^ q4;
+        q[off + 4] = q6 ^ q1 ^ q3;
+        q[off + 3] = q5 ^ q0 ^ q2;
+        q[off + 2] = q4 ^ q7 ^ q1;
+        q[off + 1] = q3 ^ q6 ^ q0;
+        q[off] = q2 ^ q5 ^ q7;
+    }
+
+    private static void checkBlocks(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkRange(in, inOff, out, outOff, len);
+        if (len % BLOCK != 0) {
+            throw new IllegalArgumentException("Data length must be a multiple of 16 bytes.");
+        }
+    }
+
+    private static void checkRange(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.length - len || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Modos de encadenamiento ECB y CBC de AES con relleno PKCS#7
+ * Basado en NIST SP 800-38A (secciones 6.1 y 6.2) y RFC 5652 (sección 6.3)
+ *
+ * La interfaz es incremental al estilo update/doFinal: el llamador puede
+ * entregar los datos en trozos de cualquier tamaño sin tener todo el mensaje
+ * en memoria, y solo se retienen hasta 16 bytes entre llamadas. El cifrado
+ * CBC, secuencial por naturaleza, usa la ruta de tablas T bloque a bloque;
+ * ECB y el descifrado CBC pasan por {@link AESMultiBlock}, que procesa varios
+ * bloques a la vez. El descifrado CBC (y ECB en ambos sentidos) se reparte
+ * entre núcleos cuando una llamada trae suficientes bloques, porque cada
+ * bloque solo depende del texto cifrado.
+ *
+ * Una instancia no es segura entre hilos; debe usarse una por flujo de datos.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESCipher {
+
+    /** Modo de encadenamiento de bloques */
+    public enum Mode { ECB, CBC }
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+
+    // A partir de este número de bloques en una llamada se reparte el trabajo entre hilos
+    static final int PARALLEL_THRESHOLD_BLOCKS = 16 * 1024;
+
+    // Bloques mínimos por tarea paralela
+    private static final int MIN_CHUNK_BLOCKS = 4 * 1024;
+
+    // Bloques por lote en el descifrado CBC
+    private static final int CBC_BATCH_BLOCKS = 64;
+
+    private final Mode mode;
+    private final boolean encrypting;
+    private final boolean padding;
+    private final AESKey key;
+    private final byte[] iv;
+
+    private final byte[] chain = new byte[BLOCK];   // Valor de encadenamiento CBC
+    private final byte[] buffer = new byte[BLOCK];  // Bytes pendientes de un bloque incompleto
+    private int buffered;
+
+    /**
+     * Crea un cifrador con relleno PKCS#7
+     * @param mode ECB o CBC
+     * @param encrypting true para cifrar, false para descifrar
+     * @param key La clave expandida
+     * @param iv Vector de inicialización de 16 bytes (ignorado en ECB, puede ser null)
+     */
+    public AESCipher(Mode mode, boolean encrypting, AESKey key, byte[] iv) {
+        this(mode, encrypting, key, iv, true);
+    }
+
+    /**
+     * Crea un cifrador
+     * @param mode ECB o CBC
+     * @param encrypting true para cifrar, false para descifrar
+     * @param key La clave expandida
+     * @param iv Vector de inicialización de 16 bytes (ignorado en ECB, puede ser null)
+     * @param padding true para PKCS#7; false exige datos múltiplos de 16 bytes
+     */
+    public AESCipher(Mode mode, boolean encrypting, AESKey key, byte[] iv, boolean padding) {
+        if (mode == Mode.CBC && (iv == null || iv.length != BLOCK)) {
+            throw new IllegalArgumentException("Invalid IV. CBC mode requires a 16-byte IV.");
+        }
+        this.mode = mode;
+        this.encrypting = encrypting;
+        this.padding = padding;
+        this.key = key;
+        this.iv = mode == Mode.CBC ? iv.clone() : null;
+        reset();
+    }
+
+    /**
+     * Restablece el cifrador a su estado inicial (mismo IV, sin datos pendientes)
+     */
+    public void reset() {
+        if (iv != null) {
+            System.arraycopy(iv, 0, chain, 0, BLOCK);
+        }
+        Arrays.fill(buffer, (byte) 0);
+        buffered = 0;
+    }
+
+    /**
+     * @param inputLen Bytes que se entregarán en la siguiente llamada
+     * @return Tamaño máximo de salida de update o doFinal con esa entrada
+     */
+    public int getOutputSize(int inputLen) {
+        int total = buffered + inputLen;
+        if (encrypting && padding) {
+            return (total / BLOCK + 1) * BLOCK;
+        }
+        return total / BLOCK * BLOCK;
+    }
+
+    /**
+     * Procesa un trozo de datos y devuelve los bloques completos que ya pueden emitirse
+     */
+    public byte[] update(byte[] in, int inOff, int len) {
+        byte[] out = new byte[getOutputSize(len)];
+        int n = update(in, inOff, len, out, 0);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Procesa un trozo de datos
+     * Al descifrar con relleno se retiene el último bloque hasta doFinal para
+     * poder quitar el relleno.
+     * @return Número de bytes escritos en {@code out}
+     */
+    public int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+        if (len < 0 || inOff < 0 || inOff > in.length - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+
+        int total = buffered + len;
+        int blocks = (!encrypting && padding) ? (total - 1) / BLOCK : total / BLOCK;
+        if (total == 0 || blocks <= 0) {
+            System.arraycopy(in, inOff, buffer, buffered, len);
+            buffered += len;
+            return 0;
+        }
+        if (outOff < 0 || outOff > out.length - blocks * BLOCK) {
+            throw new IndexOutOfBoundsException("Output buffer too short.");
+        }
+
+        int written = 0;
+
+        // Completar primero el bloque pendiente
+        if (buffered > 0) {
+            int fill = BLOCK - buffered;
+            System.arraycopy(in, inOff, buffer, buffered, fill);
+            inOff += fill;
+            len -= fill;
+            processBlocks(buffer, 0, out, outOff, 1);
+            written = BLOCK;
+            blocks--;
+            buffered = 0;
+        }
+
+        // Bloques completos directamente desde la entrada
+        if (blocks > 0) {
+            processBlocks(in, inOff, out, outOff + written, blocks);
+            int n = blocks * BLOCK;
+            inOff += n;
+            len -= n;
+            written += n;
+        }
+
+        // Guardar el resto para la siguiente llamada
+        System.arraycopy(in, inOff, buffer, 0, len);
+        buffered = len;
+        return written;
+    }
+
+    /**
+     * Termina la operación sin datos adicionales
+     */
+    public byte[] doFinal() throws IllegalBlockSizeException, BadPaddingException {
+        return doFinal(new byte[0], 0, 0);
+    }
+
+    /**
+     * Procesa el último trozo, aplica o quita el relleno y restablece el cifrador
+     */
+    public byte[] doFinal(byte[] in, int inOff, int len) throws IllegalBlockSizeException, BadPaddingException {
+        byte[] out = new byte[getOutputSize(len)];
+        int n = doFinal(in, inOff, len, out, 0);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Procesa el último trozo, aplica o quita el relleno y restablece el cifrador
+     * @return Número de bytes escritos en {@code out}
+     */
+    public int doFinal(byte[] in, int inOff, int len, byte[] out, int outOff)
+            throws IllegalBlockSizeException, BadPaddingException {
+        try {
+            int written = update(in, inOff, len, out, outOff);
+            outOff += written;
+
+            if (encrypting) {
+                if (padding) {
+                    // PKCS#7: n bytes de valor n, con n = 1..16
+                    int pad = BLOCK - buffered;
+                    Arrays.fill(buffer, buffered, BLOCK, (byte) pad);
+                    processBlocks(buffer, 0, out, outOff, 1);
+                    written += BLOCK;
+                } else if (buffered != 0) {
+                    throw new IllegalBlockSizeException("Input length not multiple of 16 bytes.");
+                }
+                return written;
+            }
+
+            if (!padding) {
+                if (buffered != 0) {
+                    throw new IllegalBlockSizeException("Input length not multiple of 16 bytes.");
+                }
+                return written;
+            }
+            if (buffered != BLOCK) {
+                throw new IllegalBlockSizeException("Input length not multiple of 16 bytes.");
+            }
+
+            byte[] last = new byte[BLOCK];
+            processBlocks(buffer, 0, last, 0, 1);
+            int pad = checkPadding(last);
+            System.arraycopy(last, 0, out, outOff, BLOCK - pad);
+            return written + BLOCK - pad;
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Verifica el relleno PKCS#7 recorriendo siempre los 16 bytes
+     * @return Número de bytes de relleno
+     */
+    private static int checkPadding(byte[] block) throws BadPaddingException {
+        int pad = block[BLOCK - 1] & 0xFF;
+        int bad = (pad == 0 || pad > BLOCK) ? 1 : 0;
+        for (int i = 0; i < BLOCK; i++) {
+            // Solo cuentan los bytes dentro del relleno declarado
+            int inPad = (BLOCK - 1 - i) < pad ? 1 : 0;
+            bad |= inPad & (((block[i] & 0xFF) ^ pad) != 0 ? 1 : 0);
+        }
+        if (bad != 0) {
+            throw new BadPaddingException("Invalid PKCS#7 padding.");
+        }
+        return pad;
+    }
+
+    /**
+     * Procesa bloques completos contiguos según el modo y el sentido
+     */
+    private void processBlocks(byte[] in, int inOff, byte[] out, int outOff, int blocks) {
+        if (mode == Mode.CBC && encrypting) {
+            // CBC cifrado es secuencial: cada bloque depende del anterior
+            for (int b = 0; b < blocks; b++) {
+                int i = inOff + b * BLOCK;
+                int o = outOff + b * BLOCK;
+                for (int j = 0; j < BLOCK; j++) {
+                    chain[j] ^= in[i + j];
+                }
+                AESTableEngine.encryptBlock(key, chain, 0, chain, 0);
+                System.arraycopy(chain, 0, out, o, BLOCK);
+            }
+            return;
+        }
+
+        if (blocks < PARALLEL_THRESHOLD_BLOCKS) {
+            // En CBC, processIndependent deja en chain el último bloque cifrado
+            processIndependent(in, inOff, out, outOff, blocks, chain);
+            return;
+        }
+
+        // ECB y descifrado CBC: tramos contiguos en paralelo. El valor de
+        // encadenamiento de cada tramo se copia antes, por si la salida
+        // sobrescribe la entrada.
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        final int chunk = Math.max(MIN_CHUNK_BLOCKS, blocks / (parallelism * 4));
+        final int chunks = (blocks + chunk - 1) / chunk;
+        final byte[][] chains = new byte[chunks][];
+        if (mode == Mode.CBC) {
+            for (int c = 0; c < chunks; c++) {
+                int first = c * chunk;
+                chains[c] = first == 0 ? chain.clone()
+                    : Arrays.copyOfRange(in, inOff + (first - 1) * BLOCK, inOff + first * BLOCK);
+            }
+            // Último bloque cifrado de esta llamada para el siguiente update
+            System.arraycopy(in, inOff + (blocks - 1) * BLOCK, chain, 0, BLOCK);
+        }
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int first = c * chunk;
+            int n = Math.min(chunk, blocks - first);
+            processIndependent(in, inOff + first * BLOCK, out, outOff + first * BLOCK, n, chains[c]);
+        });
+    }
+
+    /**
+     * ECB (cifrado o descifrado) o descifrado CBC de un tramo en el hilo actual
+     * @param cv Valor de encadenamiento CBC del tramo; al terminar contiene su último bloque cifrado
+     */
+    private void processIndependent(byte[] in, int inOff, byte[] out, int outOff, int blocks, byte[] cv) {
+        if (mode == Mode.ECB) {
+            // Bloques independientes: el motor de varios bloques los procesa juntos
+            if (encrypting) {
+                AESMultiBlock.encryptBlocks(key, in, inOff, out, outOff, blocks * BLOCK);
+            } else {
+                AESMultiBlock.decryptBlocks(key, in, inOff, out, outOff, blocks * BLOCK);
+            }
+            return;
+        }
+
+        // Descifrado CBC: P[i] = D(C[i]) XOR C[i-1]. Cada lote de texto cifrado
+        // se copia antes de descifrarlo, por si la salida es el mismo arreglo
+        // que la entrada, y se descifra entero con el motor de varios bloques
+        byte[] saved = new byte[Math.min(blocks, CBC_BATCH_BLOCKS) * BLOCK];
+        for (int b = 0; b < blocks; b += CBC_BATCH_BLOCKS) {
+            int bytes = Math.min(blocks - b, CBC_BATCH_BLOCKS) * BLOCK;
+            int o = outOff + b * BLOCK;
+            System.arraycopy(in, inOff + b * BLOCK, saved, 0, bytes);
+            AESMultiBlock.decryptBlocks(key, saved, 0, out, o, bytes);
+            for (int j = 0; j < BLOCK; j++) {
+                out[o + j] ^= cv[j];
+            }
+            for (int j = BLOCK; j < bytes; j++) {
+                out[o + j] ^= saved[j - BLOCK];
+            }
+            System.arraycopy(saved, bytes - BLOCK, cv, 0, BLOCK);
+        }
+    }
+}
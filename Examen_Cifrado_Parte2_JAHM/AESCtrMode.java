@@ -0,0 +1,278 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Modo contador (CTR) de AES para datos de cualquier longitud
+ * Basado en NIST SP 800-38A, sección 6.5
+ *
+ * El bloque contador inicial se incrementa como un entero big-endian de 128
+ * bits y los bloques de flujo de clave se cifran por lotes con
+ * {@link AESMultiBlock} (motor vectorial si está disponible, tablas T si no).
+ * Como cada bloque depende solo de su número de contador, la versión paralela
+ * divide los datos en tramos contiguos y cada tarea calcula su propio rango
+ * de contadores; el resultado es idéntico byte a byte al de un solo hilo.
+ * Cifrar y descifrar son la misma operación.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESCtrMode {
+
+    // Por debajo de este tamaño no compensa repartir el trabajo entre hilos
+    static final int PARALLEL_THRESHOLD = 256 * 1024;
+
+    // Tamaño mínimo de cada tramo paralelo (múltiplo de 16 bytes)
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    // Bytes de flujo de clave que se generan por pasada (múltiplo de 16)
+    private static final int KEYSTREAM_BATCH = 1024;
+
+    private AESCtrMode() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Cifra o descifra un arreglo completo; usa todos los núcleos si es grande
+     * @param key La clave expandida
+     * @param iv Bloque contador inicial de 16 bytes
+     * @param input Datos de entrada de cualquier longitud
+     * @return Datos de salida de la misma longitud
+     */
+    public static byte[] process(AESKey key, byte[] iv, byte[] input) {
+        byte[] output = new byte[input.length];
+        if (input.length >= PARALLEL_THRESHOLD) {
+            processParallel(key, iv, input, 0, output, 0, input.length);
+        } else {
+            process(key, iv, input, 0, output, 0, input.length);
+        }
+        return output;
+    }
+
+    /**
+     * Cifra o descifra {@code len} bytes en el hilo actual
+     * @param key La clave expandida
+     * @param iv Bloque contador inicial de 16 bytes
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes a procesar
+     */
+    public static void process(AESKey key, byte[] iv, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArguments(iv, in, inOff, out, outOff, len);
+        processRange(key, counterHigh(iv), counterLow(iv), 0, false, in, inOff, out, outOff, len);
+    }
+
+    /**
+     * Cifra o descifra los bytes restantes de {@code in} hacia {@code out}
+     * (por ejemplo, buffers directos de red) sin copiarlos al heap; usa todos
+     * los núcleos si el tramo es grande. Avanza la posición de ambos buffers,
+     * como {@code Cipher.doFinal(ByteBuffer, ByteBuffer)}.
+     * @param key La clave expandida
+     * @param iv Bloque contador inicial de 16 bytes
+     * @param in Buffer de entrada; se procesan los bytes entre su posición y su límite
+     * @param out Buffer de salida con al menos {@code in.remaining()} bytes libres
+     * @return Número de bytes procesados
+     */
+    public static int process(AESKey key, byte[] iv, ByteBuffer in, ByteBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new IndexOutOfBoundsException("Output buffer too short.");
+        }
+        processBuffer(key, iv, 0, false, in, in.position(), out, out.position(), len);
+        in.position(in.position() + len);
+        out.position(out.position() + len);
+        return len;
+    }
+
+    /**
+     * Cifra o descifra {@code len} bytes repartiendo tramos contiguos de
+     * contadores entre los hilos del ForkJoinPool común
+     * @param key La clave expandida
+     * @param iv Bloque contador inicial de 16 bytes
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes a procesar
+     */
+    public static void processParallel(AESKey key, byte[] iv, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArguments(iv, in, inOff, out, outOff, len);
+        processChunks(key, iv, 0, false, in, inOff, out, outOff, len);
+    }
+
+    /**
+     * Variante de GCM (NIST SP 800-38D): la función inc32 solo incrementa los
+     * 32 bits bajos del bloque contador, módulo 2^32. Usa todos los núcleos si
+     * el tramo es grande.
+     * @param icb Bloque contador de referencia de 16 bytes
+     * @param firstBlock Número de incrementos inc32 del primer bloque respecto a {@code icb}
+     */
+    static void processInc32(AESKey key, byte[] icb, long firstBlock,
+                             byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArguments(icb, in, inOff, out, outOff, len);
+        if (len >= PARALLEL_THRESHOLD) {
+            processChunks(key, icb, firstBlock, true, in, inOff, out, outOff, len);
+        } else {
+            processRange(key, counterHigh(icb), counterLow(icb), firstBlock, true, in, inOff, out, outOff, len);
+        }
+    }
+
+    /**
+     * Reparte tramos contiguos de contadores entre los hilos del ForkJoinPool común
+     */
+    private static void processChunks(AESKey key, byte[] iv, long firstBlock, boolean inc32,
+                                      byte[] in, int inOff, byte[] out, int outOff, int len) {
+        final long hi = counterHigh(iv);
+        final long lo = counterLow(iv);
+        final int chunk = chunkSize(len);
+        final int chunks = (len + chunk - 1) / chunk;
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = c * chunk;
+            int n = Math.min(chunk, len - start);
+            processRange(key, hi, lo, firstBlock + start / AESEngine.BLOCK_SIZE, inc32,
+                         in, inOff + start, out, outOff + start, n);
+        });
+    }
+
+    /**
+     * Procesa un tramo que empieza en el bloque {@code firstBlock} contado desde el contador inicial
+     * @param inc32 true para incrementar solo los 32 bits bajos (GCM); false para los 128 bits
+     */
+    static void processRange(AESKey key, long hi, long lo, long firstBlock, boolean inc32,
+                             byte[] in, int inOff, byte[] out, int outOff, int len) {
+        byte[] keystream = new byte[Math.min(KEYSTREAM_BATCH, (len + AESEngine.BLOCK_SIZE - 1) & -AESEngine.BLOCK_SIZE)];
+
+        int done = 0;
+        while (done < len) {
+            int n = Math.min(keystream.length, len - done);
+            fillKeystream(key, hi, lo, firstBlock + done / AESEngine.BLOCK_SIZE, inc32, keystream, n);
+            for (int i = 0; i < n; i++) {
+                out[outOff + done + i] = (byte) (in[inOff + done + i] ^ keystream[i]);
+            }
+            done += n;
+        }
+    }
+
+    /**
+     * Escribe en {@code keystream} los bloques contador que cubren {@code n}
+     * bytes, empezando en el bloque {@code block}, y los cifra de una vez con
+     * {@link AESMultiBlock} para que el motor procese varios bloques por pasada
+     */
+    private static void fillKeystream(AESKey key, long hi, long lo, long block, boolean inc32, byte[] keystream, int n) {
+        int blocks = (n + AESEngine.BLOCK_SIZE - 1) / AESEngine.BLOCK_SIZE;
+        for (int b = 0; b < blocks; b++) {
+            long ctrLo;
+            long ctrHi;
+            if (inc32) {
+                // Solo cambian los 32 bits bajos; el resto del bloque es fijo
+                ctrLo = (lo & 0xFFFFFFFF00000000L) | ((lo + block + b) & 0xFFFFFFFFL);
+                ctrHi = hi;
+            } else {
+                // (hi, lo) + block + b como suma de 128 bits
+                ctrLo = lo + block + b;
+                ctrHi = Long.compareUnsigned(ctrLo, lo) < 0 ? hi + 1 : hi;
+            }
+            putLong(ctrHi, keystream, b * AESEngine.BLOCK_SIZE);
+            putLong(ctrLo, keystream, b * AESEngine.BLOCK_SIZE + 8);
+        }
+        AESMultiBlock.encryptBlocks(key, keystream, 0, keystream, 0, blocks * AESEngine.BLOCK_SIZE);
+    }
+
+    /**
+     * Cifra o descifra directamente entre dos ByteBuffer (por ejemplo, regiones
+     * de archivo mapeadas con {@code FileChannel.map}) usando índices absolutos,
+     * sin copiar los datos a arreglos intermedios ni mover la posición de los
+     * buffers. Usa todos los núcleos si el tramo es grande.
+     * @param iv Bloque contador de referencia de 16 bytes
+     * @param firstBlock Número de incrementos del primer bloque respecto a {@code iv}
+     * @param inc32 true para incrementar solo los 32 bits bajos (GCM)
+     */
+    static void processBuffer(AESKey key, byte[] iv, long firstBlock, boolean inc32,
+                              ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+        if (iv == null || iv.length != AESEngine.BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid counter block. A 16-byte initial counter is required.");
+        }
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.limit() - len || outOff > out.limit() - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length for CTR processing.");
+        }
+        final long hi = counterHigh(iv);
+        final long lo = counterLow(iv);
+        if (len < PARALLEL_THRESHOLD) {
+            processRange(key, hi, lo, firstBlock, inc32, in, inOff, out, outOff, len);
+            return;
+        }
+
+        final int chunk = chunkSize(len);
+        final int chunks = (len + chunk - 1) / chunk;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int start = c * chunk;
+            int n = Math.min(chunk, len - start);
+            processRange(key, hi, lo, firstBlock + start / AESEngine.BLOCK_SIZE, inc32,
+                         in, inOff + start, out, outOff + start, n);
+        });
+    }
+
+    /**
+     * Versión de {@link #processRange(AESKey, long, long, long, boolean, byte[], int, byte[], int, int)}
+     * sobre ByteBuffer: el flujo de clave se combina de ocho en ocho bytes con getLong/putLong
+     */
+    private static void processRange(AESKey key, long hi, long lo, long firstBlock, boolean inc32,
+                                     ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+        // Vistas big-endian para que las palabras coincidan con el flujo de clave
+        in = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+        out = out.duplicate().order(ByteOrder.BIG_ENDIAN);
+
+        byte[] keystream = new byte[Math.min(KEYSTREAM_BATCH, (len + AESEngine.BLOCK_SIZE - 1) & -AESEngine.BLOCK_SIZE)];
+
+        int done = 0;
+        while (done < len) {
+            int n = Math.min(keystream.length, len - done);
+            fillKeystream(key, hi, lo, firstBlock + done / AESEngine.BLOCK_SIZE, inc32, keystream, n);
+            int k = 0;
+            for (; k + 8 <= n; k += 8) {
+                out.putLong(outOff + done + k, in.getLong(inOff + done + k) ^ getLong(keystream, k));
+            }
+            for (; k < n; k++) {
+                out.put(outOff + done + k, (byte) (in.get(inOff + done + k) ^ keystream[k]));
+            }
+            done += n;
+        }
+    }
+
+    /**
+     * Tamaño de tramo: unas cuatro tareas por núcleo, múltiplo de 16 bytes
+     */
+    private static int chunkSize(int len) {
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int chunk = Math.max(MIN_CHUNK, len / (parallelism * 4));
+        return (chunk + AESEngine.BLOCK_SIZE - 1) / AESEngine.BLOCK_SIZE * AESEngine.BLOCK_SIZE;
+    }
+
+    private static void checkArguments(byte[] iv, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (iv == null || iv.length != AESEngine.BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid counter block. A 16-byte initial counter is required.");
+        }
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.length - len || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length for CTR processing.");
+        }
+    }
+
+    static long counterHigh(byte[] iv) {
+        return getLong(iv, 0);
+    }
+
+    static long counterLow(byte[] iv) {
+        return getLong(iv, 8);
+    }
+
+    static long getLong(byte[] b, int off) {
+        return ((long) AESTableEngine.getWord(b, off) << 32) | (AESTableEngine.getWord(b, off + 4) & 0xFFFFFFFFL);
+    }
+
+    static void putLong(long v, byte[] b, int off) {
+        AESTableEngine.putWord((int) (v >>> 32), b, off);
+        AESTableEngine.putWord((int) v, b, off + 4);
+    }
+}
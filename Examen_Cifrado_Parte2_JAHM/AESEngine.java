@@ -0,0 +1,664 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Motor de cifrado AES sin interfaz gráfica
+ * Basado en las especificaciones FIPS-197
+ *
+ * Todas las operaciones son estáticas y no guardan estado entre llamadas,
+ * por lo que el motor puede usarse de forma concurrente desde varios hilos.
+ * La clave expandida se representa con {@link AESKey} y puede reutilizarse
+ * para cifrar cualquier número de bloques.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESEngine {
+
+    // Parámetros básicos de AES: Nk = 4, 6 u 8 palabras de clave y Nr = Nk + 6 rondas
+    static final int AES_128_NK = 4;    // Longitud de clave AES-128 en palabras de 32 bits
+    static final int AES_192_NK = 6;    // Longitud de clave AES-192 en palabras de 32 bits
+    static final int AES_256_NK = 8;    // Longitud de clave AES-256 en palabras de 32 bits
+    static final int AES_NB = 4;        // Tamaño de bloque en palabras de 32 bits
+
+    // Vista de un byte[] como palabras de 32 bits big-endian (columnas del estado)
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    /** Tamaño de bloque en bytes */
+    public static final int BLOCK_SIZE = 16;
+
+    // Implementación de S-box para la transformación de SubWord.
+    static final int[] SBOX = {
+        0x63, 0x7c, 0x77, 0x7b, 0xf2, 0x6b, 0x6f, 0xc5, 0x30, 0x01, 0x67, 0x2b, 0xfe, 0xd7, 0xab, 0x76,
+        0xca, 0x82, 0xc9, 0x7d, 0xfa, 0x59, 0x47, 0xf0, 0xad, 0xd4, 0xa2, 0xaf, 0x9c, 0xa4, 0x72, 0xc0,
+        0xb7, 0xfd, 0x93, 0x26, 0x36, 0x3f, 0xf7, 0xcc, 0x34, 0xa5, 0xe5, 0xf1, 0x71, 0xd8, 0x31, 0x15,
+        0x04, 0xc7, 0x23, 0xc3, 0x18, 0x96, 0x05, 0x9a, 0x07, 0x12, 0x80, 0xe2, 0xeb, 0x27, 0xb2, 0x75,
+        0x09, 0x83, 0x2c, 0x1a, 0x1b, 0x6e, 0x5a, 0xa0, 0x52, 0x3b, 0xd6, 0xb3, 0x29, 0xe3, 0x2f, 0x84,
+        0x53, 0xd1, 0x00, 0xed, 0x20, 0xfc, 0xb1, 0x5b, 0x6a, 0xcb, 0xbe, 0x39, 0x4a, 0x4c, 0x58, 0xcf,
+        0xd0, 0xef, 0xaa, 0xfb, 0x43, 0x4d, 0x33, 0x85, 0x45, 0xf9, 0x02, 0x7f, 0x50, 0x3c, 0x9f, 0xa8,
+        0x51, 0xa3, 0x40, 0x8f, 0x92, 0x9d, 0x38, 0xf5, 0xbc, 0xb6, 0xda, 0x21, 0x10, 0xff, 0xf3, 0xd2,
+        0xcd, 0x0c, 0x13, 0xec, 0x5f, 0x97, 0x44, 0x17, 0xc4, 0xa7, 0x7e, 0x3d, 0x64, 0x5d, 0x19, 0x73,
+        0x60, 0x81, 0x4f, 0xdc, 0x22, 0x2a, 0x90, 0x88, 0x46, 0xee, 0xb8, 0x14, 0xde, 0x5e, 0x0b, 0xdb,
+        0xe0, 0x32, 0x3a, 0x0a, 0x49, 0x06, 0x24, 0x5c, 0xc2, 0xd3, 0xac, 0x62, 0x91, 0x95, 0xe4, 0x79,
+        0xe7, 0xc8, 0x37, 0x6d, 0x8d, 0xd5, 0x4e, 0xa9, 0x6c, 0x56, 0xf4, 0xea, 0x65, 0x7a, 0xae, 0x08,
+        0xba, 0x78, 0x25, 0x2e, 0x1c, 0xa6, 0xb4, 0xc6, 0xe8, 0xdd, 0x74, 0x1f, 0x4b, 0xbd, 0x8b, 0x8a,
+        0x70, 0x3e, 0xb5, 0x66, 0x48, 0x03, 0xf6, 0x0e, 0x61, 0x35, 0x57, 0xb9, 0x86, 0xc1, 0x1d, 0x9e,
+        0xe1, 0xf8, 0x98, 0x11, 0x69, 0xd9, 0x8e, 0x94, 0x9b, 0x1e, 0x87, 0xe9, 0xce, 0x55, 0x28, 0xdf,
+        0x8c, 0xa1, 0x89, 0x0d, 0xbf, 0xe6, 0x42, 0x68, 0x41, 0x99, 0x2d, 0x0f, 0xb0, 0x54, 0xbb, 0x16
+    };
+
+    // S-box inversa para InvSubBytes, generada a partir de SBOX
+    static final int[] INV_SBOX = new int[256];
+
+    // Matriz de constantes redondeadas (Rcon) para el proceso de expansión de claves.
+    static final int[] RCON = {
+        0x01000000, 0x02000000, 0x04000000, 0x08000000, 0x10000000,
+        0x20000000, 0x40000000, 0x80000000, 0x1b000000, 0x36000000
+    };
+
+    // Tablas de multiplicación en GF(2^8) generadas al cargar la clase.
+    // MUL2 es xtime(); MUL9, MUL11, MUL13 y MUL14 se usan en InvMixColumns.
+    static final int[] MUL2 = new int[256];
+    static final int[] MUL3 = new int[256];
+    static final int[] MUL9 = new int[256];
+    static final int[] MUL11 = new int[256];
+    static final int[] MUL13 = new int[256];
+    static final int[] MUL14 = new int[256];
+
+    static {
+        for (int a = 0; a < 256; a++) {
+            int x2 = xtime(a);
+            int x4 = xtime(x2);
+            int x8 = xtime(x4);
+            MUL2[a] = x2;
+            MUL3[a] = x2 ^ a;
+            MUL9[a] = x8 ^ a;
+            MUL11[a] = x8 ^ x2 ^ a;
+            MUL13[a] = x8 ^ x4 ^ a;
+            MUL14[a] = x8 ^ x4 ^ x2;
+            INV_SBOX[SBOX[a]] = a;
+        }
+    }
+
+    private AESEngine() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Ejecuta el algoritmo de expansión de clave (FIPS-197, sección 5.2)
+     * @param key La clave de entrada de 16, 24 o 32 bytes (AES-128, AES-192 o AES-256)
+     * @return La clave expandida, reutilizable para cualquier número de bloques
+     */
+    public static AESKey expandKey(byte[] key) {
+        if (key == null || !isValidKeyLength(key.length)) {
+            throw new IllegalArgumentException(
+                "Invalid key length. A 128, 192 or 256-bit key (16, 24 or 32 bytes) is required.");
+        }
+
+        int nk = key.length / 4;
+        int nr = rounds(nk);
+        int[] w = new int[AES_NB * (nr + 1)];
+
+        // Las primeras palabras de Nk son la clave original
+        for (int i = 0; i < nk; i++) {
+            w[i] = ((key[4*i] & 0xFF) << 24) |
+                   ((key[4*i+1] & 0xFF) << 16) |
+                   ((key[4*i+2] & 0xFF) << 8) |
+                   (key[4*i+3] & 0xFF);
+        }
+
+        // Generar el resto de la clave expandida
+        for (int i = nk; i < w.length; i++) {
+            int temp = w[i-1];
+            if (i % nk == 0) {
+                temp = SubWord(RotWord(temp)) ^ RCON[i/nk - 1];
+            } else if (nk > 6 && i % nk == 4) {
+                // Solo AES-256: SubWord adicional a mitad de cada grupo de Nk palabras
+                temp = SubWord(temp);
+            }
+            w[i] = w[i-nk] ^ temp;
+        }
+
+        return new AESKey(nk, nr, w);
+    }
+
+    /**
+     * @param length Longitud de la clave en bytes
+     * @return true si corresponde a AES-128, AES-192 o AES-256
+     */
+    public static boolean isValidKeyLength(int length) {
+        return length == 4 * AES_128_NK || length == 4 * AES_192_NK || length == 4 * AES_256_NK;
+    }
+
+    /**
+     * @param nk Longitud de clave en palabras de 32 bits (4, 6 u 8)
+     * @return Numero de rondas Nr = Nk + 6 (10, 12 o 14)
+     */
+    static int rounds(int nk) {
+        return nk + 6;
+    }
+
+    /**
+     * Cifra un bloque de 16 bytes
+     * @param key La clave expandida
+     * @param plaintext El texto plano de 16 bytes para cifrar
+     * @return El texto cifrado de 16 bytes
+     */
+    public static byte[] encryptBlock(AESKey key, byte[] plaintext) {
+        byte[] output = new byte[BLOCK_SIZE];
+        encryptBlock(key, plaintext, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Cifra un bloque de 16 bytes desde {@code in[inOff]} hacia {@code out[outOff]}
+     * El bloque se copia a la salida y se cifra ahí mismo, sin crear objetos.
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento del bloque de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento del bloque de salida
+     */
+    public static void encryptBlock(AESKey key, byte[] in, int inOff, byte[] out, int outOff) {
+        if (in != out || inOff != outOff) {
+            System.arraycopy(in, inOff, out, outOff, BLOCK_SIZE);
+        }
+        encryptBlockInPlace(key, out, outOff);
+    }
+
+    /**
+     * Cifra en el mismo lugar un bloque de 16 bytes que pertenece al llamador
+     * El estado se guarda en orden por columnas (byte {@code 4*c + r}), igual
+     * que el texto plano, y ninguna transformación crea arreglos intermedios.
+     * @param key La clave expandida
+     * @param block Buffer con el bloque; se sobrescribe con el texto cifrado
+     * @param off Desplazamiento del bloque dentro del buffer
+     */
+    public static void encryptBlockInPlace(AESKey key, byte[] block, int off) {
+        // Ronda inicial (solo AddRoundKey)
+        addRoundKey(block, off, key.w, 0);
+
+        // Rondas principales
+        for (int round = 1; round < key.nr; round++) {
+            subBytes(block, off);
+            shiftRows(block, off);
+            mixColumns(block, off);
+            addRoundKey(block, off, key.w, round);
+        }
+
+        // Ronda final (sin MixColumns)
+        subBytes(block, off);
+        shiftRows(block, off);
+        addRoundKey(block, off, key.w, key.nr);
+    }
+
+    /**
+     * Igual que {@link #encryptBlockInPlace(AESKey, byte[], int)}, pero guarda
+     * en {@code trace} el estado tras cada transformación
+     */
+    static void encryptBlockInPlace(AESKey key, byte[] block, int off, AESTrace trace) {
+        trace.record(block, off);
+        addRoundKey(block, off, key.w, 0);
+        trace.record(block, off);
+
+        for (int round = 1; round < key.nr; round++) {
+            subBytes(block, off);
+            trace.record(block, off);
+            shiftRows(block, off);
+            trace.record(block, off);
+            mixColumns(block, off);
+            trace.record(block, off);
+            addRoundKey(block, off, key.w, round);
+            trace.record(block, off);
+        }
+
+        subBytes(block, off);
+        trace.record(block, off);
+        shiftRows(block, off);
+        trace.record(block, off);
+        addRoundKey(block, off, key.w, key.nr);
+        trace.record(block, off);
+    }
+
+    /**
+     * Descifra un bloque de 16 bytes (cifrado inverso, FIPS-197 sección 5.3)
+     * @param key La clave expandida
+     * @param ciphertext El texto cifrado de 16 bytes
+     * @return El texto plano de 16 bytes
+     */
+    public static byte[] decryptBlock(AESKey key, byte[] ciphertext) {
+        byte[] output = new byte[BLOCK_SIZE];
+        decryptBlock(key, ciphertext, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Descifra un bloque de 16 bytes desde {@code in[inOff]} hacia {@code out[outOff]}
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento del bloque de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento del bloque de salida
+     */
+    public static void decryptBlock(AESKey key, byte[] in, int inOff, byte[] out, int outOff) {
+        if (in != out || inOff != outOff) {
+            System.arraycopy(in, inOff, out, outOff, BLOCK_SIZE);
+        }
+        decryptBlockInPlace(key, out, outOff);
+    }
+
+    /**
+     * Descifra en el mismo lugar un bloque de 16 bytes que pertenece al llamador
+     * @param key La clave expandida
+     * @param block Buffer con el bloque; se sobrescribe con el texto plano
+     * @param off Desplazamiento del bloque dentro del buffer
+     */
+    public static void decryptBlockInPlace(AESKey key, byte[] block, int off) {
+        // Ronda inicial (solo AddRoundKey con la última clave de ronda)
+        addRoundKey(block, off, key.w, key.nr);
+
+        // Rondas principales en orden inverso
+        for (int round = key.nr - 1; round > 0; round--) {
+            invShiftRows(block, off);
+            invSubBytes(block, off);
+            addRoundKey(block, off, key.w, round);
+            invMixColumns(block, off);
+        }
+
+        // Ronda final (sin InvMixColumns)
+        invShiftRows(block, off);
+        invSubBytes(block, off);
+        addRoundKey(block, off, key.w, 0);
+    }
+
+    /**
+     * Igual que {@link #decryptBlockInPlace(AESKey, byte[], int)}, pero guarda
+     * en {@code trace} el estado tras cada transformación
+     */
+    static void decryptBlockInPlace(AESKey key, byte[] block, int off, AESTrace trace) {
+        trace.record(block, off);
+        addRoundKey(block, off, key.w, key.nr);
+        trace.record(block, off);
+
+        for (int round = key.nr - 1; round > 0; round--) {
+            invShiftRows(block, off);
+            trace.record(block, off);
+            invSubBytes(block, off);
+            trace.record(block, off);
+            addRoundKey(block, off, key.w, round);
+            trace.record(block, off);
+            invMixColumns(block, off);
+            trace.record(block, off);
+        }
+
+        invShiftRows(block, off);
+        trace.record(block, off);
+        invSubBytes(block, off);
+        trace.record(block, off);
+        addRoundKey(block, off, key.w, 0);
+        trace.record(block, off);
+    }
+
+    /**
+     * Función SubWord: aplica S-box a cada byte de la palabra
+     * Esta es una transformación crítica en el algoritmo AES.
+     * @param word Palabra de entrada de 32 bits
+     * @return Palabra transformada después de la sustitución de la caja S
+     */
+    static int SubWord(int word) {
+        int result = 0;
+        // Aplicar S-box a cada byte
+        result |= (SBOX[(word >>> 24) & 0xFF] & 0xFF) << 24;
+        result |= (SBOX[(word >>> 16) & 0xFF] & 0xFF) << 16;
+        result |= (SBOX[(word >>> 8) & 0xFF] & 0xFF) << 8;
+        result |= (SBOX[word & 0xFF] & 0xFF);
+        return result;
+    }
+
+    /**
+     * Función RotWord: rota la palabra un byte
+     * @param word Palabra de entrada de 32 bits
+     * @return Palabra después de rotación cíclica a la izquierda
+     */
+    static int RotWord(int word) {
+        return ((word << 8) | ((word >>> 24) & 0xFF));
+    }
+
+    /**
+     * Convertir un bloque de 16 bytes en una matriz de estados (orden por columnas)
+     */
+    static byte[][] toState(byte[] block, int offset) {
+        byte[][] state = new byte[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                state[j][i] = block[offset + i * 4 + j];
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Convertir la matriz de estados nuevamente a un bloque de 16 bytes
+     */
+    static void fromState(byte[][] state, byte[] block, int offset) {
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                block[offset + i * 4 + j] = state[j][i];
+            }
+        }
+    }
+
+    /**
+     * Crear una copia de una matriz de estados
+     */
+    static byte[][] copyState(byte[][] state) {
+        byte[][] copy = new byte[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                copy[i][j] = state[i][j];
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * SubBytes transformation
+     */
+    static byte[][] subBytes(byte[][] state) {
+        byte[][] result = new byte[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                result[i][j] = (byte) SBOX[state[i][j] & 0xFF];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ShiftRows transformation
+     */
+    static byte[][] shiftRows(byte[][] state) {
+        byte[][] result = new byte[4][4];
+
+        // Row 0: no shift
+        result[0][0] = state[0][0];
+        result[0][1] = state[0][1];
+        result[0][2] = state[0][2];
+        result[0][3] = state[0][3];
+
+        // Row 1: shift left by 1
+        result[1][0] = state[1][1];
+        result[1][1] = state[1][2];
+        result[1][2] = state[1][3];
+        result[1][3] = state[1][0];
+
+        // Row 2: shift left by 2
+        result[2][0] = state[2][2];
+        result[2][1] = state[2][3];
+        result[2][2] = state[2][0];
+        result[2][3] = state[2][1];
+
+        // Row 3: shift left by 3
+        result[3][0] = state[3][3];
+        result[3][1] = state[3][0];
+        result[3][2] = state[3][1];
+        result[3][3] = state[3][2];
+
+        return result;
+    }
+
+    /**
+     * MixColumns transformation
+     */
+    static byte[][] mixColumns(byte[][] state) {
+        byte[][] result = new byte[4][4];
+
+        for (int j = 0; j < 4; j++) {
+            int s0 = state[0][j] & 0xFF;
+            int s1 = state[1][j] & 0xFF;
+            int s2 = state[2][j] & 0xFF;
+            int s3 = state[3][j] & 0xFF;
+            result[0][j] = (byte) (MUL2[s0] ^ MUL3[s1] ^ s2 ^ s3);
+            result[1][j] = (byte) (s0 ^ MUL2[s1] ^ MUL3[s2] ^ s3);
+            result[2][j] = (byte) (s0 ^ s1 ^ MUL2[s2] ^ MUL3[s3]);
+            result[3][j] = (byte) (MUL3[s0] ^ s1 ^ s2 ^ MUL2[s3]);
+        }
+
+        return result;
+    }
+
+    /**
+     * InvSubBytes transformation
+     */
+    static byte[][] invSubBytes(byte[][] state) {
+        byte[][] result = new byte[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                result[i][j] = (byte) INV_SBOX[state[i][j] & 0xFF];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * InvShiftRows transformation: la fila r rota r posiciones a la derecha
+     */
+    static byte[][] invShiftRows(byte[][] state) {
+        byte[][] result = new byte[4][4];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                result[i][(j + i) % 4] = state[i][j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * InvMixColumns transformation
+     */
+    static byte[][] invMixColumns(byte[][] state) {
+        byte[][] result = new byte[4][4];
+
+        for (int j = 0; j < 4; j++) {
+            int s0 = state[0][j] & 0xFF;
+            int s1 = state[1][j] & 0xFF;
+            int s2 = state[2][j] & 0xFF;
+            int s3 = state[3][j] & 0xFF;
+            result[0][j] = (byte) (MUL14[s0] ^ MUL11[s1] ^ MUL13[s2] ^ MUL9[s3]);
+            result[1][j] = (byte) (MUL9[s0] ^ MUL14[s1] ^ MUL11[s2] ^ MUL13[s3]);
+            result[2][j] = (byte) (MUL13[s0] ^ MUL9[s1] ^ MUL14[s2] ^ MUL11[s3]);
+            result[3][j] = (byte) (MUL11[s0] ^ MUL13[s1] ^ MUL9[s2] ^ MUL14[s3]);
+        }
+
+        return result;
+    }
+
+    /**
+     * InvMixColumns aplicado a una columna empaquetada como palabra (fila 0 en el byte alto)
+     * Se usa para derivar el calendario de claves del cifrado inverso equivalente.
+     */
+    static int invMixColumnWord(int word) {
+        int s0 = word >>> 24;
+        int s1 = (word >>> 16) & 0xFF;
+        int s2 = (word >>> 8) & 0xFF;
+        int s3 = word & 0xFF;
+        return ((MUL14[s0] ^ MUL11[s1] ^ MUL13[s2] ^ MUL9[s3]) << 24)
+             | ((MUL9[s0] ^ MUL14[s1] ^ MUL11[s2] ^ MUL13[s3]) << 16)
+             | ((MUL13[s0] ^ MUL9[s1] ^ MUL14[s2] ^ MUL11[s3]) << 8)
+             | (MUL11[s0] ^ MUL13[s1] ^ MUL9[s2] ^ MUL14[s3]);
+    }
+
+    /**
+     * xtime: multiplicación por 02 en GF(2^8) sin saltos condicionales
+     * @param a Byte de entrada (0..255)
+     * @return a·02 reducido con el polinomio x^8 + x^4 + x^3 + x + 1
+     */
+    static int xtime(int a) {
+        return ((a << 1) ^ (((a >>> 7) & 1) * 0x1b)) & 0xFF;
+    }
+
+    /**
+     * Multiplicación del campo de Galois
+     * Para los factores constantes de MixColumns usar las tablas MUL2..MUL14.
+     */
+    static int gmul(int a, int b) {
+        int p = 0;
+        int high_bit;
+
+        for (int i = 0; i < 8; i++) {
+            if ((b & 1) != 0) {
+                p ^= a;
+            }
+
+            high_bit = a & 0x80;
+            a <<= 1;
+
+            if (high_bit != 0) {
+                a ^= 0x1b; // Irreducible polynomial x^8 + x^4 + x^3 + x + 1
+            }
+
+            b >>= 1;
+        }
+
+        return p & 0xFF;
+    }
+
+    /**
+     * AddRoundKey transformation
+     * La columna j del estado se combina con la palabra w[4*round + j], cuyo
+     * byte más significativo corresponde a la fila 0
+     */
+    static byte[][] addRoundKey(byte[][] state, int[] w, int round) {
+        byte[][] result = new byte[4][4];
+
+        for (int j = 0; j < 4; j++) {
+            int word = w[4 * round + j];
+            for (int i = 0; i < 4; i++) {
+                result[i][j] = (byte) (state[i][j] ^ (word >>> (24 - 8 * i)));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * SubBytes en el mismo lugar sobre un bloque plano de 16 bytes
+     */
+    static void subBytes(byte[] b, int off) {
+        for (int i = off; i < off + BLOCK_SIZE; i++) {
+            b[i] = (byte) SBOX[b[i] & 0xFF];
+        }
+    }
+
+    /**
+     * ShiftRows en el mismo lugar: la fila r ocupa los bytes r, r+4, r+8, r+12
+     */
+    static void shiftRows(byte[] b, int off) {
+        byte t;
+
+        // Row 1: shift left by 1
+        t = b[off + 1];
+        b[off + 1] = b[off + 5];
+        b[off + 5] = b[off + 9];
+        b[off + 9] = b[off + 13];
+        b[off + 13] = t;
+
+        // Row 2: shift left by 2
+        t = b[off + 2];
+        b[off + 2] = b[off + 10];
+        b[off + 10] = t;
+        t = b[off + 6];
+        b[off + 6] = b[off + 14];
+        b[off + 14] = t;
+
+        // Row 3: shift left by 3
+        t = b[off + 15];
+        b[off + 15] = b[off + 11];
+        b[off + 11] = b[off + 7];
+        b[off + 7] = b[off + 3];
+        b[off + 3] = t;
+    }
+
+    /**
+     * MixColumns en el mismo lugar: cada columna son 4 bytes consecutivos
+     */
+    static void mixColumns(byte[] b, int off) {
+        for (int c = off; c < off + BLOCK_SIZE; c += 4) {
+            int s0 = b[c] & 0xFF;
+            int s1 = b[c + 1] & 0xFF;
+            int s2 = b[c + 2] & 0xFF;
+            int s3 = b[c + 3] & 0xFF;
+            b[c] = (byte) (MUL2[s0] ^ MUL3[s1] ^ s2 ^ s3);
+            b[c + 1] = (byte) (s0 ^ MUL2[s1] ^ MUL3[s2] ^ s3);
+            b[c + 2] = (byte) (s0 ^ s1 ^ MUL2[s2] ^ MUL3[s3]);
+            b[c + 3] = (byte) (MUL3[s0] ^ s1 ^ s2 ^ MUL2[s3]);
+        }
+    }
+
+    /**
+     * AddRoundKey en el mismo lugar, palabra a palabra: cada columna del bloque
+     * (4 bytes consecutivos) se lee como un entero big-endian y se combina con
+     * la palabra w[4*round + c], así que una ronda son 4 XOR en lugar de 16
+     */
+    static void addRoundKey(byte[] b, int off, int[] w, int round) {
+        int k = 4 * round;
+        for (int c = 0; c < 4; c++) {
+            int i = off + 4 * c;
+            INT_BE.set(b, i, (int) INT_BE.get(b, i) ^ w[k + c]);
+        }
+    }
+
+    /**
+     * InvSubBytes en el mismo lugar sobre un bloque plano de 16 bytes
+     */
+    static void invSubBytes(byte[] b, int off) {
+        for (int i = off; i < off + BLOCK_SIZE; i++) {
+            b[i] = (byte) INV_SBOX[b[i] & 0xFF];
+        }
+    }
+
+    /**
+     * InvShiftRows en el mismo lugar: la fila r rota r posiciones a la derecha
+     */
+    static void invShiftRows(byte[] b, int off) {
+        byte t;
+
+        // Row 1: shift right by 1
+        t = b[off + 13];
+        b[off + 13] = b[off + 9];
+        b[off + 9] = b[off + 5];
+        b[off + 5] = b[off + 1];
+        b[off + 1] = t;
+
+        // Row 2: shift right by 2
+        t = b[off + 2];
+        b[off + 2] = b[off + 10];
+        b[off + 10] = t;
+        t = b[off + 6];
+        b[off + 6] = b[off + 14];
+        b[off + 14] = t;
+
+        // Row 3: shift right by 3
+        t = b[off + 3];
+        b[off + 3] = b[off + 7];
+        b[off + 7] = b[off + 11];
+        b[off + 11] = b[off + 15];
+        b[off + 15] = t;
+    }
+
+    /**
+     * InvMixColumns en el mismo lugar: cada columna son 4 bytes consecutivos
+     */
+    static void invMixColumns(byte[] b, int off) {
+        for (int c = off; c < off + BLOCK_SIZE; c += 4) {
+            int s0 = b[c] & 0xFF;
+            int s1 = b[c + 1] & 0xFF;
+            int s2 = b[c + 2] & 0xFF;
+            int s3 = b[c + 3] & 0xFF;
+            b[c] = (byte) (MUL14[s0] ^ MUL11[s1] ^ MUL13[s2] ^ MUL9[s3]);
+            b[c + 1] = (byte) (MUL9[s0] ^ MUL14[s1] ^ MUL11[s2] ^ MUL13[s3]);
+            b[c + 2] = (byte) (MUL13[s0] ^ MUL9[s1] ^ MUL14[s2] ^ MUL11[s3]);
+            b[c + 3] = (byte) (MUL11[s0] ^ MUL13[s1] ^ MUL9[s2] ^ MUL14[s3]);
+        }
+    }
+}
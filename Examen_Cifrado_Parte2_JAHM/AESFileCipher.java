@@ -0,0 +1,282 @@
+import javax.crypto.AEADBadTagException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+
+/**
+ * Cifrado de archivos desde la línea de comandos, sin interfaz gráfica
+ *
+ * La entrada y la salida se mapean en memoria con {@link FileChannel#map} por
+ * ventanas grandes y el modo CTR o GCM opera directamente sobre las regiones
+ * mapeadas, sin copiar los datos al heap. El tamaño de archivo no está
+ * limitado por la memoria de la JVM.
+ *
+ * Formato del archivo cifrado:
+ * CTR: [contador inicial de 16 bytes][texto cifrado]
+ * GCM: [IV de 12 bytes][texto cifrado][etiqueta de 16 bytes]
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESFileCipher {
+
+    // Tamaño de cada ventana mapeada (múltiplo de 16 bytes)
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int CTR_IV_LENGTH = 16;
+    private static final int GCM_IV_LENGTH = 12;
+
+    private AESFileCipher() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Punto de entrada de la línea de comandos
+     * @param args --encrypt-file|--decrypt-file entrada salida --key hex [--mode ctr|gcm]
+     * @return Código de salida del proceso (0 si todo fue correcto)
+     */
+    static int run(String[] args) {
+        String command = null;
+        String in = null;
+        String out = null;
+        String keyHex = null;
+        String mode = "gcm";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--encrypt-file":
+                    case "--decrypt-file":
+                        command = args[i];
+                        in = args[++i];
+                        out = args[++i];
+                        break;
+                    case "--key":
+                        keyHex = args[++i];
+                        break;
+                    case "--mode":
+                        mode = args[++i].toLowerCase();
+                        break;
+                    default:
+                        return usage("Unknown argument: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return usage("Missing value for " + args[args.length - 1]);
+        }
+
+        if (command == null || keyHex == null) {
+            return usage("An input file, an output file and --key are required.");
+        }
+        if (!mode.equals("ctr") && !mode.equals("gcm")) {
+            return usage("Invalid mode: " + mode + ". Use ctr or gcm.");
+        }
+
+        byte[] key = parseKey(keyHex);
+        if (key == null) {
+            return usage("Invalid key. Use 32, 48 or 64 hexadecimal characters.");
+        }
+
+        boolean encrypt = command.equals("--encrypt-file");
+        Path inPath = Paths.get(in);
+        Output output = new Output(Paths.get(out));
+        try {
+            if (Files.exists(output.path) && Files.isSameFile(inPath, output.path)) {
+                return usage("The input and output files must be different.");
+            }
+            AESKey aesKey = AESEngine.expandKey(key);
+            long start = System.nanoTime();
+            long size;
+            if (mode.equals("ctr")) {
+                size = encrypt ? encryptCtr(aesKey, inPath, output) : decryptCtr(aesKey, inPath, output);
+            } else {
+                size = encrypt ? encryptGcm(aesKey, inPath, output) : decryptGcm(aesKey, inPath, output);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s %d bytes with AES-%d-%s in %.2f s (%.1f MB/s)%n",
+                encrypt ? "Encrypted" : "Decrypted", size, aesKey.getNk() * 32, mode.toUpperCase(),
+                seconds, size / 1e6 / Math.max(seconds, 1e-9));
+            return 0;
+        } catch (AEADBadTagException e) {
+            output.deleteIfOpened();
+            System.err.println("Error: authentication failed, the file was modified or the key is wrong.");
+            return 2;
+        } catch (IOException | IllegalArgumentException e) {
+            output.deleteIfOpened();
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * CTR: escribe el contador inicial aleatorio y después el texto cifrado
+     * @return Bytes de datos procesados
+     */
+    static long encryptCtr(AESKey key, Path in, Output out) throws IOException {
+        byte[] iv = new byte[CTR_IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = out.open()) {
+            long size = src.size();
+            dst.write(ByteBuffer.wrap(iv), 0);
+            transformCtr(key, iv, src, 0, dst, CTR_IV_LENGTH, size);
+            return size;
+        }
+    }
+
+    /**
+     * CTR: lee el contador inicial de la cabecera y descifra el resto
+     * @return Bytes de datos procesados
+     */
+    static long decryptCtr(AESKey key, Path in, Output out) throws IOException {
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ)) {
+            long size = src.size() - CTR_IV_LENGTH;
+            if (size < 0) {
+                throw new IOException("Input too short for a CTR file.");
+            }
+            byte[] iv = readHeader(src, 0, CTR_IV_LENGTH);
+            try (FileChannel dst = out.open()) {
+                transformCtr(key, iv, src, CTR_IV_LENGTH, dst, 0, size);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * GCM: escribe IV aleatorio, texto cifrado y etiqueta
+     * @return Bytes de datos procesados
+     */
+    static long encryptGcm(AESKey key, Path in, Output out) throws IOException {
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        new SecureRandom().nextBytes(iv);
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = out.open()) {
+            long size = src.size();
+            dst.write(ByteBuffer.wrap(iv), 0);
+
+            AESGcmMode.Session session = new AESGcmMode(key).start(iv, null, true);
+            transformGcm(session, src, 0, dst, GCM_IV_LENGTH, size);
+            dst.write(ByteBuffer.wrap(session.finish()), GCM_IV_LENGTH + size);
+            return size;
+        }
+    }
+
+    /**
+     * GCM: descifra y verifica la etiqueta al final
+     * El texto plano se escribe antes de conocer la etiqueta; si no coincide,
+     * {@link #run} borra el archivo de salida.
+     * @return Bytes de datos procesados
+     */
+    static long decryptGcm(AESKey key, Path in, Output out) throws IOException, AEADBadTagException {
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ)) {
+            long size = src.size() - GCM_IV_LENGTH - AESGcmMode.TAG_LENGTH;
+            if (size < 0) {
+                throw new IOException("Input too short for a GCM file.");
+            }
+            byte[] iv = readHeader(src, 0, GCM_IV_LENGTH);
+            byte[] tag = readHeader(src, GCM_IV_LENGTH + size, AESGcmMode.TAG_LENGTH);
+
+            AESGcmMode.Session session = new AESGcmMode(key).start(iv, null, false);
+            try (FileChannel dst = out.open()) {
+                transformGcm(session, src, GCM_IV_LENGTH, dst, 0, size);
+            }
+            session.verify(tag, 0);
+            return size;
+        }
+    }
+
+    /**
+     * Recorre el archivo por ventanas mapeadas; cada ventana empieza en un
+     * múltiplo de 16 bytes, así que su primer bloque de contador se deduce del desplazamiento
+     */
+    private static void transformCtr(AESKey key, byte[] iv, FileChannel src, long srcOff,
+                                     FileChannel dst, long dstOff, long size) throws IOException {
+        for (long pos = 0; pos < size; pos += WINDOW_SIZE) {
+            int n = (int) Math.min(WINDOW_SIZE, size - pos);
+            MappedByteBuffer inBuf = src.map(FileChannel.MapMode.READ_ONLY, srcOff + pos, n);
+            MappedByteBuffer outBuf = dst.map(FileChannel.MapMode.READ_WRITE, dstOff + pos, n);
+            AESCtrMode.processBuffer(key, iv, pos / AESEngine.BLOCK_SIZE, false, inBuf, 0, outBuf, 0, n);
+        }
+    }
+
+    private static void transformGcm(AESGcmMode.Session session, FileChannel src, long srcOff,
+                                     FileChannel dst, long dstOff, long size) throws IOException {
+        for (long pos = 0; pos < size; pos += WINDOW_SIZE) {
+            int n = (int) Math.min(WINDOW_SIZE, size - pos);
+            MappedByteBuffer inBuf = src.map(FileChannel.MapMode.READ_ONLY, srcOff + pos, n);
+            MappedByteBuffer outBuf = dst.map(FileChannel.MapMode.READ_WRITE, dstOff + pos, n);
+            session.update(inBuf, 0, outBuf, 0, n);
+        }
+    }
+
+    /**
+     * Archivo de salida; recuerda si esta ejecución llegó a crearlo o truncarlo,
+     * para no borrar un archivo ajeno cuando el fallo ocurre antes de abrirlo
+     */
+    static final class Output {
+        final Path path;
+        private boolean opened;
+
+        Output(Path path) {
+            this.path = path;
+        }
+
+        FileChannel open() throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            opened = true;
+            return channel;
+        }
+
+        void deleteIfOpened() {
+            if (opened) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static byte[] readHeader(FileChannel src, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (src.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Convierte la clave hexadecimal; devuelve null si no es válida
+     */
+    private static byte[] parseKey(String keyString) {
+        byte[] key;
+        try {
+            key = AESHex.decodeIgnoringWhitespace(keyString);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return AESEngine.isValidKeyLength(key.length) ? key : null;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Se informa el error original
+        }
+    }
+
+    private static int usage(String message) {
+        PrintStream err = System.err;
+        err.println("Error: " + message);
+        err.println("Usage: java AESKeyExpansionGUI --encrypt-file <in> <out> --key <hex> [--mode ctr|gcm]");
+        err.println("       java AESKeyExpansionGUI --decrypt-file <in> <out> --key <hex> [--mode ctr|gcm]");
+        return 1;
+    }
+}
@@ -0,0 +1,409 @@
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Pruebas diferenciales aleatorias contra el proveedor AES del JDK
+ *
+ * Cada tarea elige una clave aleatoria de 128, 192 o 256 bits y un lote de
+ * bloques aleatorios, los cifra con javax.crypto "AES/ECB/NoPadding" y
+ * compara bloque a bloque el resultado de cada motor del proyecto, en ambos
+ * sentidos: la implementación de referencia FIPS-197, la ruta con traza que
+ * usa la interfaz gráfica, las tablas T (un bloque, cuatro entrelazados y
+ * sobre un ByteBuffer directo), AESCipher en ECB, el motor bitsliced y
+ * AESMultiBlock con el motor que haya elegido. La expansión de clave de
+ * tiempo constante del motor bitsliced y la de AESKeyBatch también se
+ * comparan con la de referencia. Las tareas se reparten entre todos los núcleos.
+ *
+ * La semilla de cada tarea se deriva de la semilla global y del número de
+ * tarea, así que cualquier divergencia se reproduce con --seed y --task. Al
+ * encontrarla se informa el bloque concreto (clave, entrada, esperado y
+ * obtenido) y si el fallo se repite con ese bloque aislado. Una excepción
+ * de un motor cuenta también como divergencia de su tarea.
+ *
+ * Uso: java AESFuzzer [--seed N] [--seconds N] [--batch N] [--task N]
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESFuzzer {
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+    private static final int[] KEY_LENGTHS = { 16, 24, 32 };
+
+    /**
+     * Cifrado o descifrado ECB de un lote de bloques con un motor concreto
+     */
+    @FunctionalInterface
+    interface BatchFunction {
+        void apply(AESKey key, byte[] in, byte[] out, int len) throws GeneralSecurityException;
+    }
+
+    /**
+     * Motor bajo prueba, con sus dos sentidos
+     */
+    static final class Engine {
+        final String name;
+        final BatchFunction encrypt;
+        final BatchFunction decrypt;
+
+        Engine(String name, BatchFunction encrypt, BatchFunction decrypt) {
+            this.name = name;
+            this.encrypt = encrypt;
+            this.decrypt = decrypt;
+        }
+    }
+
+    /**
+     * Primera divergencia encontrada
+     */
+    private static final class Divergence {
+        final long task;
+        final String engine;
+        final boolean encrypt;
+        final byte[] key;
+        final byte[] input;
+        final byte[] expected;
+        final byte[] actual;
+        final boolean isolated;     // Si el bloque aislado también diverge
+        final String error;         // Excepción lanzada por el motor, o null
+
+        Divergence(long task, String engine, boolean encrypt, byte[] key, byte[] input,
+                   byte[] expected, byte[] actual, boolean isolated) {
+            this.task = task;
+            this.engine = engine;
+            this.encrypt = encrypt;
+            this.key = key;
+            this.input = input;
+            this.expected = expected;
+            this.actual = actual;
+            this.isolated = isolated;
+            this.error = null;
+        }
+
+        Divergence(long task, String engine, boolean encrypt, byte[] key, RuntimeException e) {
+            this.task = task;
+            this.engine = engine;
+            this.encrypt = encrypt;
+            this.key = key;
+            this.input = null;
+            this.expected = null;
+            this.actual = null;
+            this.isolated = false;
+            StackTraceElement[] frames = e.getStackTrace();
+            this.error = frames.length > 0 ? e + " at " + frames[0] : e.toString();
+        }
+    }
+
+    // Buffer directo por hilo, en orden little-endian para comprobar que se ignora
+    private static final ThreadLocal<ByteBuffer[]> DIRECT = new ThreadLocal<>();
+
+    // La traza se reutiliza por hilo, como una sola cifra de la interfaz
+    private static final ThreadLocal<AESTrace> TRACES =
+        ThreadLocal.withInitial(() -> new AESTrace(AESTrace.snapshotsPerBlock(14)));
+
+    static final List<Engine> ENGINES = new ArrayList<>();
+
+    static {
+        ENGINES.add(new Engine("FIPS-197 reference",
+            blocks(AESEngine::encryptBlock), blocks(AESEngine::decryptBlock)));
+        ENGINES.add(new Engine("traced (GUI path)",
+            (key, in, out, len) -> traced(key, in, out, len, true),
+            (key, in, out, len) -> traced(key, in, out, len, false)));
+        ENGINES.add(new Engine("T-table",
+            blocks(AESTableEngine::encryptBlock), blocks(AESTableEngine::decryptBlock)));
+        ENGINES.add(new Engine("T-table x4",
+            (key, in, out, len) -> AESTableEngine.encryptBlocks(key, in, 0, out, 0, len),
+            (key, in, out, len) -> AESTableEngine.decryptBlocks(key, in, 0, out, 0, len)));
+        ENGINES.add(new Engine("T-table direct ByteBuffer",
+            (key, in, out, len) -> direct(key, in, out, len, true),
+            (key, in, out, len) -> direct(key, in, out, len, false)));
+        ENGINES.add(new Engine("AESCipher ECB",
+            (key, in, out, len) -> new AESCipher(AESCipher.Mode.ECB, true, key, null, false).doFinal(in, 0, len, out, 0),
+            (key, in, out, len) -> new AESCipher(AESCipher.Mode.ECB, false, key, null, false).doFinal(in, 0, len, out, 0)));
+        ENGINES.add(new Engine("bitsliced",
+            (key, in, out, len) -> AESBitslicedEngine.encryptBlocks(key, in, 0, out, 0, len),
+            (key, in, out, len) -> AESBitslicedEngine.decryptBlocks(key, in, 0, out, 0, len)));
+        ENGINES.add(new Engine("multi-block (" + AESMultiBlock.engineName() + ")",
+            (key, in, out, len) -> AESMultiBlock.encryptBlocks(key, in, 0, out, 0, len),
+            (key, in, out, len) -> AESMultiBlock.decryptBlocks(key, in, 0, out, 0, len)));
+    }
+
+    private final long seed;
+    private final int batch;
+    private final AtomicLong nextTask = new AtomicLong();
+    private final LongAdder comparisons = new LongAdder();
+    private final AtomicReference<Divergence> divergence = new AtomicReference<>();
+
+    private AESFuzzer(long seed, int batch) {
+        this.seed = seed;
+        this.batch = batch;
+    }
+
+    public static void main(String[] args) {
+        long seed = new SplittableRandom().nextLong();
+        int seconds = 10;
+        int batch = 256;
+        long task = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--batch":
+                        batch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--task":
+                        task = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        System.exit(usage("Unknown argument: " + args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.exit(usage("Invalid or missing value for " + args[args.length - 1]));
+        }
+        if (seconds <= 0 || batch <= 0) {
+            System.exit(usage("--seconds and --batch must be positive."));
+        }
+
+        AESFuzzer fuzzer = new AESFuzzer(seed, batch);
+        System.out.println("Seed: " + seed + ", batch: " + batch + " blocks, engines: " + ENGINES.size()
+            + ", " + Runtime.getRuntime().availableProcessors() + " cores");
+        long start = System.nanoTime();
+        long tasks;
+        if (task >= 0) {
+            fuzzer.runTask(task);
+            tasks = 1;
+        } else {
+            tasks = fuzzer.runFor(seconds * 1_000_000_000L);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long total = fuzzer.comparisons.sum();
+        System.out.printf("%d tasks, %d block comparisons in %.1f s (%.1f million/min)%n",
+            tasks, total, elapsed, total / elapsed * 60 / 1e6);
+
+        Divergence d = fuzzer.divergence.get();
+        if (d == null) {
+            System.out.println("No divergence found.");
+            return;
+        }
+        System.out.println("DIVERGENCE in " + d.engine + " (" + (d.encrypt ? "encrypt" : "decrypt") + ")");
+        System.out.println("  key      = " + AESHex.encode(d.key));
+        if (d.error != null) {
+            System.out.println("  exception = " + d.error);
+        } else {
+            System.out.println("  input    = " + AESHex.encode(d.input));
+            System.out.println("  JDK      = " + AESHex.encode(d.expected));
+            System.out.println("  actual   = " + AESHex.encode(d.actual));
+            System.out.println("  single block reproduces: " + (d.isolated ? "yes" : "no (depends on the batch)"));
+        }
+        System.out.println("  replay: java AESFuzzer --seed " + seed + " --batch " + batch + " --task " + d.task);
+        System.exit(1);
+    }
+
+    /**
+     * Ejecuta tareas en todos los núcleos hasta agotar el tiempo o encontrar una divergencia
+     * @return Número de tareas completadas
+     */
+    private long runFor(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        int threads = Runtime.getRuntime().availableProcessors();
+        LongAdder done = new LongAdder();
+        IntStream.range(0, threads).parallel().forEach(t -> {
+            while (divergence.get() == null && System.nanoTime() < deadline) {
+                runTask(nextTask.getAndIncrement());
+                done.increment();
+            }
+        });
+        return done.sum();
+    }
+
+    /**
+     * Una tarea: clave y lote aleatorios, cifrado y descifrado por cada motor
+     */
+    private void runTask(long task) {
+        SplittableRandom random = new SplittableRandom(seed ^ (task * 0x9E3779B97F4A7C15L));
+        byte[] keyBytes = new byte[KEY_LENGTHS[random.nextInt(KEY_LENGTHS.length)]];
+        byte[] plaintext = new byte[batch * BLOCK];
+        fill(random, keyBytes);
+        fill(random, plaintext);
+
+        try {
+            byte[] ciphertext = jdk(Cipher.ENCRYPT_MODE, keyBytes, plaintext);
+            AESKey key = AESEngine.expandKey(keyBytes);
+            try {
+                checkKeySchedule(task, keyBytes, key);
+            } catch (RuntimeException e) {
+                divergence.compareAndSet(null, new Divergence(task, "key schedule", true, keyBytes.clone(), e));
+                return;
+            }
+            byte[] out = new byte[plaintext.length];
+            for (Engine engine : ENGINES) {
+                if (!check(task, engine, true, keyBytes, key, plaintext, ciphertext, out)
+                        || !check(task, engine, false, keyBytes, key, ciphertext, plaintext, out)) {
+                    return;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JDK AES provider failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ejecuta un sentido de un motor y compara el lote; una excepción del
+     * motor se guarda como divergencia en lugar de abortar la ejecución
+     * @return false si el motor lanzó una excepción
+     */
+    private boolean check(long task, Engine engine, boolean encrypt, byte[] keyBytes, AESKey key,
+                          byte[] input, byte[] expected, byte[] out) throws GeneralSecurityException {
+        try {
+            (encrypt ? engine.encrypt : engine.decrypt).apply(key, input, out, input.length);
+            compare(task, engine, encrypt, keyBytes, key, input, expected, out);
+            return true;
+        } catch (RuntimeException e) {
+            divergence.compareAndSet(null, new Divergence(task, engine.name, encrypt, keyBytes.clone(), e));
+            return false;
+        }
+    }
+
+    /**
+     * Compara un lote bloque a bloque y guarda la primera divergencia, reducida a un bloque
+     */
+    private void compare(long task, Engine engine, boolean encrypt, byte[] keyBytes, AESKey key,
+                         byte[] input, byte[] expected, byte[] actual) throws GeneralSecurityException {
+        comparisons.add(batch);
+        if (Arrays.equals(expected, actual)) {
+            return;
+        }
+        for (int off = 0; off < input.length; off += BLOCK) {
+            if (Arrays.equals(expected, off, off + BLOCK, actual, off, off + BLOCK)) {
+                continue;
+            }
+            byte[] block = Arrays.copyOfRange(input, off, off + BLOCK);
+            byte[] single = new byte[BLOCK];
+            (encrypt ? engine.encrypt : engine.decrypt).apply(key, block, single, BLOCK);
+            boolean isolated = !Arrays.equals(single, 0, BLOCK, expected, off, off + BLOCK);
+            divergence.compareAndSet(null, new Divergence(task, engine.name, encrypt, keyBytes.clone(), block,
+                Arrays.copyOfRange(expected, off, off + BLOCK), Arrays.copyOfRange(actual, off, off + BLOCK), isolated));
+            return;
+        }
+    }
+
+    /**
+     * Compara con la de referencia la expansión de clave de tiempo constante y
+     * la de AESKeyBatch, con la clave en una posición interior de un lote
+     */
+    private void checkKeySchedule(long task, byte[] keyBytes, AESKey key) {
+        checkKeySchedule(task, "bitsliced expandKey", keyBytes, key, AESBitslicedEngine.expandKey(keyBytes).w);
+        byte[] material = new byte[3 * keyBytes.length];
+        System.arraycopy(keyBytes, 0, material, keyBytes.length, keyBytes.length);
+        checkKeySchedule(task, "AESKeyBatch", keyBytes, key, AESKeyBatch.expand(material, keyBytes.length).key(1).w);
+    }
+
+    private void checkKeySchedule(long task, String name, byte[] keyBytes, AESKey key, int[] w) {
+        comparisons.increment();
+        for (int i = 0; i < w.length; i++) {
+            if (w[i] != key.w[i]) {
+                byte[] expected = new byte[4];
+                byte[] actual = new byte[4];
+                AESTableEngine.putWord(key.w[i], expected, 0);
+                AESTableEngine.putWord(w[i], actual, 0);
+                divergence.compareAndSet(null, new Divergence(task, name + " (w[" + i + "])", true,
+                    keyBytes.clone(), keyBytes.clone(), expected, actual, true));
+                return;
+            }
+        }
+    }
+
+    private static byte[] jdk(int mode, byte[] key, byte[] data) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"));
+        return cipher.doFinal(data);
+    }
+
+    /**
+     * Adapta una función de bloque a un lote ECB
+     */
+    private static BatchFunction blocks(AESKatRunner.BlockFunction f) {
+        return (key, in, out, len) -> {
+            for (int off = 0; off < len; off += BLOCK) {
+                f.apply(key, in, off, out, off);
+            }
+        };
+    }
+
+    /**
+     * Ruta de ByteBuffer: el lote se copia a un buffer directo, se cifra ahí con
+     * índices absolutos desplazados un byte y se copia de vuelta
+     */
+    private static void direct(AESKey key, byte[] in, byte[] out, int len, boolean encrypt) {
+        ByteBuffer[] holder = DIRECT.get();
+        if (holder == null || holder[0].capacity() < len + 1) {
+            holder = new ByteBuffer[] { ByteBuffer.allocateDirect(len + 1).order(ByteOrder.LITTLE_ENDIAN) };
+            DIRECT.set(holder);
+        }
+        ByteBuffer buf = holder[0];
+        buf.clear();
+        buf.position(1);
+        buf.put(in, 0, len);
+        if (encrypt) {
+            AESTableEngine.encryptBlocks(key, buf, 1, buf, 1, len);
+        } else {
+            AESTableEngine.decryptBlocks(key, buf, 1, buf, 1, len);
+        }
+        buf.position(1);
+        buf.get(out, 0, len);
+    }
+
+    /**
+     * Ruta con traza de la interfaz; además comprueba que la última instantánea sea la salida
+     */
+    private static void traced(AESKey key, byte[] in, byte[] out, int len, boolean encrypt) {
+        AESTrace trace = TRACES.get();
+        System.arraycopy(in, 0, out, 0, len);
+        for (int off = 0; off < len; off += BLOCK) {
+            trace.clear();
+            if (encrypt) {
+                AESEngine.encryptBlockInPlace(key, out, off, trace);
+            } else {
+                AESEngine.decryptBlockInPlace(key, out, off, trace);
+            }
+            int last = trace.size() - 1;
+            for (int i = 0; i < BLOCK; i++) {
+                if (trace.get(last, i) != (out[off + i] & 0xFF)) {
+                    throw new IllegalStateException("Last trace snapshot does not match the output block.");
+                }
+            }
+        }
+    }
+
+    private static void fill(SplittableRandom random, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i += 8) {
+            long v = random.nextLong();
+            for (int j = i; j < Math.min(i + 8, bytes.length); j++) {
+                bytes[j] = (byte) v;
+                v >>>= 8;
+            }
+        }
+    }
+
+    private static int usage(String message) {
+        System.err.println("Error: " + message);
+        System.err.println("Usage: java AESFuzzer [--seed N] [--seconds N] [--batch N] [--task N]");
+        return 1;
+    }
+}
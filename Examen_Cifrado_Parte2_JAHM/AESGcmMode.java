@@ -0,0 +1,510 @@
+import javax.crypto.AEADBadTagException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Cifrado autenticado AES-GCM
+ * Basado en NIST SP 800-38D y en la especificación original de McGrew y Viega
+ *
+ * La parte de confidencialidad es el modo CTR con incremento inc32, que se
+ * reparte entre núcleos igual que {@link AESCtrMode}. La autenticación usa
+ * GHASH con tablas de 4 bits precalculadas por clave: para cada una de las 32
+ * posiciones de nibble de un bloque se guardan los 16 productos posibles por
+ * H ya reducidos, de modo que una multiplicación en GF(2^128) se reduce a 32
+ * búsquedas y XOR sin desplazamientos ni reducción. Se precalculan H, H^2, H^3
+ * y H^4 para procesar cuatro bloques por iteración (reducción agregada):
+ * Y = (Y + X1)·H^4 + X2·H^3 + X3·H^2 + X4·H, cuatro productos independientes
+ * que se suman sin cadena de dependencias entre ellos.
+ *
+ * Una instancia es inmutable tras construirse y puede compartirse entre hilos;
+ * cada mensaje usa su propia {@link Session}. Un mismo IV nunca debe repetirse
+ * con la misma clave.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESGcmMode {
+
+    /** Longitud de la etiqueta de autenticación en bytes */
+    public static final int TAG_LENGTH = 16;
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+
+    // Polinomio de reducción de GCM (x^128 + x^7 + x^2 + x + 1) en orden de bits reflejado
+    private static final long R = 0xE100000000000000L;
+
+    // Máximo de bytes de datos por mensaje: (2^32 - 2) bloques
+    private static final long MAX_DATA_LENGTH = ((1L << 32) - 2) * BLOCK;
+
+    private final AESKey key;
+
+    // Tablas de H^1..H^4: índice (posición de nibble << 4) | valor del nibble
+    private final long[] h1Hi, h1Lo, h2Hi, h2Lo, h3Hi, h3Lo, h4Hi, h4Lo;
+
+    /**
+     * Prepara GCM para una clave: calcula H = E(K, 0^128) y sus tablas GHASH
+     * @param key La clave expandida
+     */
+    public AESGcmMode(AESKey key) {
+        this.key = key;
+        byte[] h = AESTableEngine.encryptBlock(key, new byte[BLOCK]);
+        long hHi = AESCtrMode.getLong(h, 0);
+        long hLo = AESCtrMode.getLong(h, 8);
+
+        h1Hi = new long[512];
+        h1Lo = new long[512];
+        buildTable(hHi, hLo, h1Hi, h1Lo);
+
+        long[] p = new long[2];
+        multiply(h1Hi, h1Lo, hHi, hLo, p);
+        h2Hi = new long[512];
+        h2Lo = new long[512];
+        buildTable(p[0], p[1], h2Hi, h2Lo);
+
+        multiply(h1Hi, h1Lo, p[0], p[1], p);
+        h3Hi = new long[512];
+        h3Lo = new long[512];
+        buildTable(p[0], p[1], h3Hi, h3Lo);
+
+        multiply(h1Hi, h1Lo, p[0], p[1], p);
+        h4Hi = new long[512];
+        h4Lo = new long[512];
+        buildTable(p[0], p[1], h4Hi, h4Lo);
+    }
+
+    /**
+     * Pone a cero las tablas GHASH, que dependen de H y por tanto de la clave
+     * Solo debe llamarse cuando ninguna sesión usa ya la instancia.
+     */
+    void wipe() {
+        for (long[] table : new long[][] { h1Hi, h1Lo, h2Hi, h2Lo, h3Hi, h3Lo, h4Hi, h4Lo }) {
+            Arrays.fill(table, 0L);
+        }
+    }
+
+    /**
+     * Cifra y autentica un mensaje completo
+     * @param iv Vector de inicialización (se recomiendan 12 bytes)
+     * @param aad Datos adicionales autenticados pero no cifrados (puede ser null)
+     * @param plaintext Texto plano de cualquier longitud
+     * @return Texto cifrado seguido de la etiqueta de 16 bytes
+     */
+    public byte[] encrypt(byte[] iv, byte[] aad, byte[] plaintext) {
+        byte[] out = new byte[plaintext.length + TAG_LENGTH];
+        Session s = start(iv, aad, true);
+        s.update(plaintext, 0, plaintext.length, out, 0);
+        System.arraycopy(s.finish(), 0, out, plaintext.length, TAG_LENGTH);
+        return out;
+    }
+
+    /**
+     * Verifica y descifra un mensaje completo
+     * El texto plano solo se devuelve si la etiqueta es válida.
+     * @param iv Vector de inicialización usado al cifrar
+     * @param aad Datos adicionales autenticados (puede ser null)
+     * @param ciphertext Texto cifrado seguido de la etiqueta de 16 bytes
+     * @return Texto plano
+     * @throws AEADBadTagException Si la etiqueta no coincide
+     */
+    public byte[] decrypt(byte[] iv, byte[] aad, byte[] ciphertext) throws AEADBadTagException {
+        if (ciphertext.length < TAG_LENGTH) {
+            throw new AEADBadTagException("Ciphertext shorter than the authentication tag.");
+        }
+        int len = ciphertext.length - TAG_LENGTH;
+        byte[] out = new byte[len];
+        Session s = start(iv, aad, false);
+        s.update(ciphertext, 0, len, out, 0);
+        try {
+            s.verify(ciphertext, len);
+        } catch (AEADBadTagException e) {
+            Arrays.fill(out, (byte) 0);
+            throw e;
+        }
+        return out;
+    }
+
+    /**
+     * Inicia un mensaje para procesarlo por trozos
+     * @param iv Vector de inicialización (no vacío)
+     * @param aad Datos adicionales autenticados (puede ser null)
+     * @param encrypting true para cifrar, false para descifrar
+     * @return La sesión del mensaje
+     */
+    public Session start(byte[] iv, byte[] aad, boolean encrypting) {
+        if (iv == null || iv.length == 0) {
+            throw new IllegalArgumentException("Invalid IV. GCM requires a non-empty IV.");
+        }
+        return new Session(iv, aad, encrypting);
+    }
+
+    /**
+     * Un mensaje GCM en curso
+     * Al descifrar por trozos el texto plano se entrega antes de conocer la
+     * etiqueta; el llamador debe descartarlo si {@link #verify} falla.
+     * No es segura entre hilos.
+     */
+    public final class Session {
+
+        private final boolean encrypting;
+        private final byte[] j0 = new byte[BLOCK];   // Bloque contador previo
+        private final long aadLength;
+
+        private long yHi, yLo;                         // Acumulador GHASH
+        private long processed;                        // Bytes de datos procesados
+        private final byte[] pending = new byte[BLOCK];  // Texto cifrado aún sin GHASH
+        private final byte[] keystream = new byte[BLOCK];
+        private boolean finished;
+
+        private Session(byte[] iv, byte[] aad, boolean encrypting) {
+            this.encrypting = encrypting;
+
+            // J0 = IV || 0^31 || 1 para IV de 96 bits; si no, GHASH(IV || relleno || [len(IV)]64)
+            if (iv.length == 12) {
+                System.arraycopy(iv, 0, j0, 0, 12);
+                j0[BLOCK - 1] = 1;
+            } else {
+                absorb(iv, 0, iv.length);
+                absorbLengths(0, (long) iv.length * 8);
+                AESCtrMode.putLong(yHi, j0, 0);
+                AESCtrMode.putLong(yLo, j0, 8);
+                yHi = 0;
+                yLo = 0;
+            }
+
+            if (aad != null) {
+                absorb(aad, 0, aad.length);
+            }
+            aadLength = aad == null ? 0 : aad.length;
+        }
+
+        /**
+         * Cifra o descifra un trozo de datos de cualquier longitud
+         * @param out Arreglo de salida (puede ser el mismo que la entrada)
+         */
+        public void update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+            if (finished) {
+                throw new IllegalStateException("GCM session already finished.");
+            }
+            if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.length - len || outOff > out.length - len) {
+                throw new IndexOutOfBoundsException("Invalid offset or length for GCM processing.");
+            }
+            if (processed + len > MAX_DATA_LENGTH) {
+                throw new IllegalStateException("GCM message too long.");
+            }
+
+            // Completar el bloque de flujo de clave empezado en la llamada anterior
+            while (len > 0 && (processed & (BLOCK - 1)) != 0) {
+                int i = (int) (processed & (BLOCK - 1));
+                byte c = encrypting ? (byte) (in[inOff] ^ keystream[i]) : in[inOff];
+                out[outOff] = (byte) (in[inOff] ^ keystream[i]);
+                pending[i] = c;
+                if (i == BLOCK - 1) {
+                    ghashBlocks(pending, 0, 1);
+                }
+                processed++;
+                inOff++;
+                outOff++;
+                len--;
+            }
+
+            // Bloques completos: GHASH siempre sobre el texto cifrado. Al
+            // descifrar se autentica antes de sobrescribir por si es en el mismo lugar.
+            int full = len & ~(BLOCK - 1);
+            if (full > 0) {
+                long firstBlock = 1 + processed / BLOCK;
+                if (!encrypting) {
+                    ghashBlocks(in, inOff, full / BLOCK);
+                }
+                AESCtrMode.processInc32(key, j0, firstBlock, in, inOff, out, outOff, full);
+                if (encrypting) {
+                    ghashBlocks(out, outOff, full / BLOCK);
+                }
+                processed += full;
+                inOff += full;
+                outOff += full;
+                len -= full;
+            }
+
+            // Resto: se genera un bloque de flujo de clave y se guarda el texto cifrado parcial
+            if (len > 0) {
+                int ctr = AESTableEngine.getWord(j0, 12) + 1 + (int) (processed / BLOCK);
+                System.arraycopy(j0, 0, keystream, 0, 12);
+                AESTableEngine.putWord(ctr, keystream, 12);
+                AESTableEngine.encryptBlock(key, keystream, 0, keystream, 0);
+                for (int i = 0; i < len; i++) {
+                    pending[i] = encrypting ? (byte) (in[inOff + i] ^ keystream[i]) : in[inOff + i];
+                    out[outOff + i] = (byte) (in[inOff + i] ^ keystream[i]);
+                }
+                processed += len;
+            }
+        }
+
+        /**
+         * Cifra o descifra los bytes restantes de {@code in} hacia {@code out}
+         * sin copiarlos al heap y avanza la posición de ambos buffers
+         * @param in Buffer de entrada; se procesan los bytes entre su posición y su límite
+         * @param out Buffer de salida con al menos {@code in.remaining()} bytes libres
+         * @return Número de bytes procesados
+         */
+        public int update(ByteBuffer in, ByteBuffer out) {
+            int len = in.remaining();
+            if (out.remaining() < len) {
+                throw new IndexOutOfBoundsException("Output buffer too short.");
+            }
+            update(in, in.position(), out, out.position(), len);
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return len;
+        }
+
+        /**
+         * Cifra o descifra directamente entre dos ByteBuffer con índices
+         * absolutos (por ejemplo, regiones de archivo mapeadas), sin copiar los
+         * datos a arreglos intermedios
+         * @param out Buffer de salida (puede ser el mismo que la entrada)
+         */
+        void update(ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+            if (finished) {
+                throw new IllegalStateException("GCM session already finished.");
+            }
+            if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.limit() - len || outOff > out.limit() - len) {
+                throw new IndexOutOfBoundsException("Invalid offset or length for GCM processing.");
+            }
+            if (processed + len > MAX_DATA_LENGTH) {
+                throw new IllegalStateException("GCM message too long.");
+            }
+
+            // Los trozos sueltos (inicio o final sin bloque completo) pasan por la ruta de arreglos
+            int head = (int) Math.min(len, (BLOCK - (processed & (BLOCK - 1))) & (BLOCK - 1));
+            if (head > 0) {
+                updateSmall(in, inOff, out, outOff, head);
+                inOff += head;
+                outOff += head;
+                len -= head;
+            }
+
+            int full = len & ~(BLOCK - 1);
+            if (full > 0) {
+                long firstBlock = 1 + processed / BLOCK;
+                if (!encrypting) {
+                    ghashBlocks(in, inOff, full / BLOCK);
+                }
+                AESCtrMode.processBuffer(key, j0, firstBlock, true, in, inOff, out, outOff, full);
+                if (encrypting) {
+                    ghashBlocks(out, outOff, full / BLOCK);
+                }
+                processed += full;
+                inOff += full;
+                outOff += full;
+                len -= full;
+            }
+
+            if (len > 0) {
+                updateSmall(in, inOff, out, outOff, len);
+            }
+        }
+
+        /**
+         * Menos de un bloque desde un ByteBuffer a través de un arreglo temporal
+         */
+        private void updateSmall(ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+            byte[] tmp = new byte[len];
+            for (int i = 0; i < len; i++) {
+                tmp[i] = in.get(inOff + i);
+            }
+            update(tmp, 0, len, tmp, 0);
+            for (int i = 0; i < len; i++) {
+                out.put(outOff + i, tmp[i]);
+            }
+        }
+
+        /**
+         * Termina el mensaje y calcula la etiqueta
+         * @return Etiqueta de autenticación de 16 bytes
+         */
+        public byte[] finish() {
+            if (finished) {
+                throw new IllegalStateException("GCM session already finished.");
+            }
+            finished = true;
+
+            int rest = (int) (processed & (BLOCK - 1));
+            if (rest != 0) {
+                Arrays.fill(pending, rest, BLOCK, (byte) 0);
+                ghashBlocks(pending, 0, 1);
+            }
+            absorbLengths(aadLength * 8, processed * 8);
+
+            // T = E(K, J0) XOR GHASH
+            byte[] tag = AESTableEngine.encryptBlock(key, j0);
+            AESCtrMode.putLong(AESCtrMode.getLong(tag, 0) ^ yHi, tag, 0);
+            AESCtrMode.putLong(AESCtrMode.getLong(tag, 8) ^ yLo, tag, 8);
+            Arrays.fill(keystream, (byte) 0);
+            return tag;
+        }
+
+        /**
+         * Termina el mensaje y compara la etiqueta en tiempo constante
+         * @param tag Arreglo que contiene la etiqueta recibida
+         * @param tagOff Desplazamiento de la etiqueta
+         * @throws AEADBadTagException Si la etiqueta no coincide
+         */
+        public void verify(byte[] tag, int tagOff) throws AEADBadTagException {
+            if (tagOff < 0 || tagOff > tag.length - TAG_LENGTH) {
+                throw new AEADBadTagException("Authentication tag missing.");
+            }
+            byte[] expected = finish();
+            byte[] received = Arrays.copyOfRange(tag, tagOff, tagOff + TAG_LENGTH);
+            if (!MessageDigest.isEqual(expected, received)) {
+                throw new AEADBadTagException("Tag mismatch.");
+            }
+        }
+
+        /**
+         * GHASH de datos con relleno de ceros hasta un múltiplo de 16 bytes
+         */
+        private void absorb(byte[] data, int off, int len) {
+            int full = len & ~(BLOCK - 1);
+            ghashBlocks(data, off, full / BLOCK);
+            if (full < len) {
+                byte[] last = new byte[BLOCK];
+                System.arraycopy(data, off + full, last, 0, len - full);
+                ghashBlocks(last, 0, 1);
+            }
+        }
+
+        /**
+         * GHASH del bloque final de longitudes en bits
+         */
+        private void absorbLengths(long bitsA, long bitsB) {
+            byte[] block = new byte[BLOCK];
+            AESCtrMode.putLong(bitsA, block, 0);
+            AESCtrMode.putLong(bitsB, block, 8);
+            ghashBlocks(block, 0, 1);
+        }
+
+        /**
+         * Y = (Y XOR X_i)·H para cada bloque, de cuatro en cuatro con H^4..H
+         */
+        private void ghashBlocks(byte[] b, int off, int blocks) {
+            for (; blocks >= 4; blocks -= 4, off += 4 * BLOCK) {
+                fold4(AESCtrMode.getLong(b, off), AESCtrMode.getLong(b, off + 8),
+                      AESCtrMode.getLong(b, off + 16), AESCtrMode.getLong(b, off + 24),
+                      AESCtrMode.getLong(b, off + 32), AESCtrMode.getLong(b, off + 40),
+                      AESCtrMode.getLong(b, off + 48), AESCtrMode.getLong(b, off + 56));
+            }
+            for (; blocks > 0; blocks--, off += BLOCK) {
+                fold1(AESCtrMode.getLong(b, off), AESCtrMode.getLong(b, off + 8));
+            }
+        }
+
+        /**
+         * GHASH de bloques leídos de un ByteBuffer con índices absolutos
+         */
+        private void ghashBlocks(ByteBuffer buf, int off, int blocks) {
+            ByteBuffer b = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+            for (; blocks >= 4; blocks -= 4, off += 4 * BLOCK) {
+                fold4(b.getLong(off), b.getLong(off + 8), b.getLong(off + 16), b.getLong(off + 24),
+                      b.getLong(off + 32), b.getLong(off + 40), b.getLong(off + 48), b.getLong(off + 56));
+            }
+            for (; blocks > 0; blocks--, off += BLOCK) {
+                fold1(b.getLong(off), b.getLong(off + 8));
+            }
+        }
+
+        /**
+         * Y = (Y XOR X0)·H^4 XOR X1·H^3 XOR X2·H^2 XOR X3·H
+         * Las tablas ya contienen los productos reducidos, así que los cuatro
+         * productos se acumulan con XOR sin reducción intermedia.
+         */
+        private void fold4(long x0h, long x0l, long x1h, long x1l, long x2h, long x2l, long x3h, long x3l) {
+            x0h ^= yHi;
+            x0l ^= yLo;
+            long zHi = 0;
+            long zLo = 0;
+            for (int p = 0; p < 16; p++) {
+                int shift = 60 - 4 * p;
+                int a = (p << 4) | (int) ((x0h >>> shift) & 0xF);
+                int c = (p << 4) | (int) ((x1h >>> shift) & 0xF);
+                int d = (p << 4) | (int) ((x2h >>> shift) & 0xF);
+                int e = (p << 4) | (int) ((x3h >>> shift) & 0xF);
+                zHi ^= h4Hi[a] ^ h3Hi[c] ^ h2Hi[d] ^ h1Hi[e];
+                zLo ^= h4Lo[a] ^ h3Lo[c] ^ h2Lo[d] ^ h1Lo[e];
+
+                a = ((p + 16) << 4) | (int) ((x0l >>> shift) & 0xF);
+                c = ((p + 16) << 4) | (int) ((x1l >>> shift) & 0xF);
+                d = ((p + 16) << 4) | (int) ((x2l >>> shift) & 0xF);
+                e = ((p + 16) << 4) | (int) ((x3l >>> shift) & 0xF);
+                zHi ^= h4Hi[a] ^ h3Hi[c] ^ h2Hi[d] ^ h1Hi[e];
+                zLo ^= h4Lo[a] ^ h3Lo[c] ^ h2Lo[d] ^ h1Lo[e];
+            }
+            yHi = zHi;
+            yLo = zLo;
+        }
+
+        /**
+         * Y = (Y XOR X)·H
+         */
+        private void fold1(long xh, long xl) {
+            xh ^= yHi;
+            xl ^= yLo;
+            long zHi = 0;
+            long zLo = 0;
+            for (int p = 0; p < 16; p++) {
+                int shift = 60 - 4 * p;
+                int a = (p << 4) | (int) ((xh >>> shift) & 0xF);
+                int b = ((p + 16) << 4) | (int) ((xl >>> shift) & 0xF);
+                zHi ^= h1Hi[a] ^ h1Hi[b];
+                zLo ^= h1Lo[a] ^ h1Lo[b];
+            }
+            yHi = zHi;
+            yLo = zLo;
+        }
+    }
+
+    /**
+     * X·H con la tabla de H: XOR de una entrada por cada nibble de X
+     * @param r Arreglo de 2 posiciones donde se deja el resultado (alto, bajo)
+     */
+    private static void multiply(long[] tHi, long[] tLo, long xHi, long xLo, long[] r) {
+        long zHi = 0;
+        long zLo = 0;
+        for (int p = 0; p < 16; p++) {
+            int shift = 60 - 4 * p;
+            int a = (p << 4) | (int) ((xHi >>> shift) & 0xF);
+            int b = ((p + 16) << 4) | (int) ((xLo >>> shift) & 0xF);
+            zHi ^= tHi[a] ^ tHi[b];
+            zLo ^= tLo[a] ^ tLo[b];
+        }
+        r[0] = zHi;
+        r[1] = zLo;
+    }
+
+    /**
+     * Construye la tabla de 32 x 16 productos ya reducidos de un valor V
+     * En GCM el bit 0 es el más significativo del primer byte y representa x^0,
+     * así que multiplicar por x equivale a desplazar a la derecha y reducir.
+     */
+    private static void buildTable(long vHi, long vLo, long[] tHi, long[] tLo) {
+        for (int p = 0; p < 32; p++) {
+            int base = p << 4;
+            // Los bits del nibble, del más al menos significativo, son x^(4p)..x^(4p+3)
+            for (int bit = 8; bit > 0; bit >>>= 1) {
+                tHi[base | bit] = vHi;
+                tLo[base | bit] = vLo;
+                long carry = vLo & 1;
+                vLo = (vLo >>> 1) | (vHi << 63);
+                vHi = (vHi >>> 1) ^ (R & -carry);
+            }
+            // El resto de entradas son combinaciones lineales de las cuatro anteriores
+            for (int n = 1; n < 16; n++) {
+                int low = n & -n;
+                if (n != low) {
+                    tHi[base | n] = tHi[base | low] ^ tHi[base | (n ^ low)];
+                    tLo[base | n] = tLo[base | low] ^ tLo[base | (n ^ low)];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codificación y decodificación hexadecimal con tablas
+ *
+ * La decodificación valida y convierte en una sola pasada: cada carácter se
+ * consulta en una tabla de 128 entradas que da su valor (0-15), marca los
+ * espacios en blanco o lo rechaza, sin expresiones regulares, subcadenas ni
+ * Integer.parseInt. Las variantes que reciben el arreglo de salida no asignan
+ * memoria, así que sirven para entradas de megabytes. Se aceptan mayúsculas y
+ * minúsculas; la codificación produce minúsculas.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESHex {
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // Valor de cada carácter ASCII: 0-15 para dígitos, WHITESPACE o INVALID
+    private static final byte WHITESPACE = -2;
+    private static final byte INVALID = -1;
+    private static final byte[] NIBBLE = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLE, INVALID);
+        for (int i = 0; i < 16; i++) {
+            NIBBLE[DIGITS[i]] = (byte) i;
+            NIBBLE[Character.toUpperCase(DIGITS[i])] = (byte) i;
+        }
+        // Los mismos espacios que \s en una expresión regular
+        for (char c : " \t\n\u000B\f\r".toCharArray()) {
+            NIBBLE[c] = WHITESPACE;
+        }
+    }
+
+    private AESHex() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Decodifica un texto hexadecimal estricto (sin espacios)
+     * @param hex Texto con un número par de dígitos hexadecimales
+     * @return Los bytes decodificados
+     * @throws NumberFormatException Si hay caracteres no hexadecimales
+     * @throws IllegalArgumentException Si el número de dígitos es impar
+     */
+    public static byte[] decode(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of hexadecimal digits.");
+        }
+        byte[] out = new byte[hex.length() / 2];
+        decode(hex, 0, hex.length(), out, 0, false);
+        return out;
+    }
+
+    /**
+     * Decodifica un texto hexadecimal ignorando los espacios en blanco (también entre los dos dígitos de un byte)
+     * @param hex Texto hexadecimal, por ejemplo "2b7e1516 28aed2a6"
+     * @return Los bytes decodificados
+     * @throws NumberFormatException Si hay caracteres no hexadecimales
+     * @throws IllegalArgumentException Si el número de dígitos es impar
+     */
+    public static byte[] decodeIgnoringWhitespace(CharSequence hex) {
+        byte[] out = new byte[hex.length() / 2];
+        int n = decode(hex, 0, hex.length(), out, 0, true);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Decodifica hex[start..end) en un arreglo existente, sin asignar memoria
+     * @param hex Texto hexadecimal
+     * @param start Índice inicial (incluido)
+     * @param end Índice final (excluido)
+     * @param out Arreglo de salida; debe tener sitio para los bytes decodificados
+     *            ((end - start) / 2 sin espacios)
+     * @param outOff Desplazamiento de salida
+     * @param skipWhitespace true para ignorar espacios en blanco
+     * @return Número de bytes escritos
+     * @throws NumberFormatException Si hay caracteres no hexadecimales
+     * @throws IllegalArgumentException Si el número de dígitos es impar
+     * @throws IndexOutOfBoundsException Si los índices no son válidos o la salida no tiene sitio
+     */
+    public static int decode(CharSequence hex, int start, int end, byte[] out, int outOff, boolean skipWhitespace) {
+        if (start < 0 || end > hex.length() || start > end || outOff < 0) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+        int o = outOff;
+        int i = start;
+        if (!skipWhitespace) {
+            if ((end - start) % 2 != 0) {
+                throw new IllegalArgumentException("Odd number of hexadecimal digits.");
+            }
+            if (outOff > out.length - (end - start) / 2) {
+                throw new IndexOutOfBoundsException("Output array too small.");
+            }
+            for (; i < end; i += 2) {
+                char c0 = hex.charAt(i);
+                char c1 = hex.charAt(i + 1);
+                int hi = c0 < 128 ? NIBBLE[c0] : INVALID;
+                int lo = c1 < 128 ? NIBBLE[c1] : INVALID;
+                if ((hi | lo) < 0) {
+                    throw invalidCharacter(hi < 0 ? i : i + 1);
+                }
+                out[o++] = (byte) ((hi << 4) | lo);
+            }
+            return o - outOff;
+        }
+
+        // Si el arreglo no alcanza para el peor caso, se cuentan antes los dígitos
+        // para fallar sin haber escrito nada; con sitio suficiente no hace falta
+        if (outOff > out.length - (end - start) / 2 && outOff > out.length - countDigits(hex, start, end) / 2) {
+            throw new IndexOutOfBoundsException("Output array too small.");
+        }
+        int pending = -1;   // Dígito alto a la espera del bajo
+        for (; i < end; i++) {
+            char c = hex.charAt(i);
+            int v = c < 128 ? NIBBLE[c] : INVALID;
+            if (v < 0) {
+                if (v == WHITESPACE) {
+                    continue;
+                }
+                throw invalidCharacter(i);
+            }
+            if (pending < 0) {
+                pending = v;
+            } else {
+                out[o++] = (byte) ((pending << 4) | v);
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            throw new IllegalArgumentException("Odd number of hexadecimal digits.");
+        }
+        return o - outOff;
+    }
+
+    /**
+     * @param bytes Bytes a codificar
+     * @return Texto hexadecimal en minúsculas, dos dígitos por byte
+     */
+    public static String encode(byte[] bytes) {
+        return encode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @param bytes Bytes a codificar
+     * @param off Desplazamiento
+     * @param len Número de bytes
+     * @return Texto hexadecimal en minúsculas, dos dígitos por byte
+     */
+    public static String encode(byte[] bytes, int off, int len) {
+        byte[] ascii = new byte[2 * len];
+        encode(bytes, off, len, ascii, 0);
+        return new String(ascii, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Escribe los dígitos ASCII de bytes[off..off+len) en un arreglo existente, sin asignar memoria
+     * @param out Arreglo de salida; debe tener sitio para 2 * len bytes
+     * @param outOff Desplazamiento de salida
+     */
+    public static void encode(byte[] bytes, int off, int len, byte[] out, int outOff) {
+        if (off < 0 || len < 0 || outOff < 0 || off > bytes.length - len || outOff + 2L * len > out.length) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+        for (int i = 0; i < len; i++) {
+            int b = bytes[off + i];
+            out[outOff + 2 * i] = DIGITS[(b >>> 4) & 0xF];
+            out[outOff + 2 * i + 1] = DIGITS[b & 0xF];
+        }
+    }
+
+    /**
+     * Añade los dos dígitos de un byte, como String.format("%02x", b & 0xFF)
+     */
+    public static StringBuilder appendByte(StringBuilder sb, int b) {
+        return sb.append((char) DIGITS[(b >>> 4) & 0xF]).append((char) DIGITS[b & 0xF]);
+    }
+
+    /**
+     * Añade los ocho dígitos de una palabra, como String.format("%08x", word)
+     */
+    public static StringBuilder appendWord(StringBuilder sb, int word) {
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            sb.append((char) DIGITS[(word >>> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    /**
+     * @return Los ocho dígitos de una palabra, como String.format("%08x", word)
+     */
+    public static String encodeWord(int word) {
+        byte[] ascii = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            ascii[i] = DIGITS[(word >>> (28 - 4 * i)) & 0xF];
+        }
+        return new String(ascii, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Caracteres de hex[start..end) que no son espacios en blanco
+     */
+    private static int countDigits(CharSequence hex, int start, int end) {
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = hex.charAt(i);
+            if (c >= 128 || NIBBLE[c] != WHITESPACE) {
+                digits++;
+            }
+        }
+        return digits;
+    }
+
+    private static NumberFormatException invalidCharacter(int index) {
+        return new NumberFormatException("Invalid hexadecimal character at index " + index + ".");
+    }
+}
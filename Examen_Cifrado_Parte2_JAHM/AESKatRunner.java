@@ -0,0 +1,375 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Ejecutor sin interfaz gráfica de los vectores de prueba NIST CAVP (AESAVS)
+ *
+ * Lee archivos .rsp de ECB y CBC (GFSbox, KeySbox, VarKey, VarTxt, MMT y
+ * Monte Carlo) y comprueba todos los vectores en paralelo con todos los
+ * núcleos. Cada registro Monte Carlo se verifica por separado a partir de su
+ * KEY, IV y bloque de entrada, así que los registros de un archivo también se
+ * reparten entre hilos; cada uno encadena 1000 cifrados, por lo que esa fase
+ * sirve además como prueba de rendimiento del motor.
+ *
+ * El modo se deduce del nombre del archivo (ECB... o CBC...) y los archivos
+ * con "MCT" en el nombre se tratan como Monte Carlo.
+ *
+ * Uso: java AESKatRunner [--reference] archivo.rsp|directorio...
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESKatRunner {
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+    private static final int MCT_ITERATIONS = 1000;
+    private static final int MAX_REPORTED_FAILURES = 20;
+
+    /**
+     * Cifrado o descifrado de un bloque con un motor concreto
+     */
+    @FunctionalInterface
+    interface BlockFunction {
+        void apply(AESKey key, byte[] in, int inOff, byte[] out, int outOff);
+    }
+
+    /**
+     * Par de funciones de bloque de un motor
+     */
+    static final class Engine {
+        final String name;
+        final BlockFunction encrypt;
+        final BlockFunction decrypt;
+
+        Engine(String name, BlockFunction encrypt, BlockFunction decrypt) {
+            this.name = name;
+            this.encrypt = encrypt;
+            this.decrypt = decrypt;
+        }
+    }
+
+    static final Engine TABLE_ENGINE =
+        new Engine("T-table", AESTableEngine::encryptBlock, AESTableEngine::decryptBlock);
+    static final Engine REFERENCE_ENGINE =
+        new Engine("FIPS-197 reference", AESEngine::encryptBlock, AESEngine::decryptBlock);
+
+    /**
+     * Un registro COUNT de un archivo .rsp
+     */
+    private static final class TestVector {
+        final String file;
+        final AESCipher.Mode mode;
+        final boolean monteCarlo;
+        final boolean encrypt;
+        final int count;
+        final byte[] key;
+        final byte[] iv;
+        final byte[] plaintext;
+        final byte[] ciphertext;
+
+        TestVector(String file, AESCipher.Mode mode, boolean monteCarlo, boolean encrypt, int count,
+                   byte[] key, byte[] iv, byte[] plaintext, byte[] ciphertext) {
+            this.file = file;
+            this.mode = mode;
+            this.monteCarlo = monteCarlo;
+            this.encrypt = encrypt;
+            this.count = count;
+            this.key = key;
+            this.iv = iv;
+            this.plaintext = plaintext;
+            this.ciphertext = ciphertext;
+        }
+
+        String describe() {
+            return file + " [" + (encrypt ? "ENCRYPT" : "DECRYPT") + "] COUNT = " + count;
+        }
+    }
+
+    private AESKatRunner() {
+        // Clase de utilidades, no se instancia
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run(args, System.out));
+    }
+
+    /**
+     * @return Código de salida: 0 si todos los vectores pasan, 1 si alguno falla o hay un error
+     */
+    static int run(String[] args, PrintStream out) throws IOException {
+        Engine engine = TABLE_ENGINE;
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--reference")) {
+                engine = REFERENCE_ENGINE;
+            } else {
+                collect(Paths.get(arg), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Error: no .rsp files found.");
+            System.err.println("Usage: java AESKatRunner [--reference] <file.rsp|directory>...");
+            return 1;
+        }
+
+        List<TestVector> known = new ArrayList<>();
+        List<TestVector> monteCarlo = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            AESCipher.Mode mode = modeOf(name);
+            if (mode == null) {
+                out.println("Skipping " + name + " (only ECB and CBC files are supported)");
+                continue;
+            }
+            List<TestVector> parsed = parse(file, mode, name.contains("MCT"));
+            (name.contains("MCT") ? monteCarlo : known).addAll(parsed);
+        }
+
+        out.println("Engine: " + engine.name + ", " + Runtime.getRuntime().availableProcessors() + " cores");
+        Map<String, int[]> perFile = new LinkedHashMap<>();
+        List<String> failures = new ArrayList<>();
+
+        long knownNanos = runPhase(known, engine, perFile, failures);
+        long mctNanos = runPhase(monteCarlo, engine, perFile, failures);
+
+        for (Map.Entry<String, int[]> e : perFile.entrySet()) {
+            out.printf("%-28s %6d passed %6d failed%n", e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+        for (int i = 0; i < Math.min(failures.size(), MAX_REPORTED_FAILURES); i++) {
+            out.println(failures.get(i));
+        }
+        if (failures.size() > MAX_REPORTED_FAILURES) {
+            out.println("... and " + (failures.size() - MAX_REPORTED_FAILURES) + " more failures");
+        }
+
+        int total = known.size() + monteCarlo.size();
+        out.printf("Known-answer: %d vectors in %.1f ms (%.0f vectors/s)%n",
+            known.size(), knownNanos / 1e6, rate(known.size(), knownNanos));
+        if (!monteCarlo.isEmpty()) {
+            long blocks = (long) monteCarlo.size() * MCT_ITERATIONS;
+            out.printf("Monte Carlo: %d vectors in %.1f ms (%.0f vectors/s, %.0f blocks/s, %.1f MB/s)%n",
+                monteCarlo.size(), mctNanos / 1e6, rate(monteCarlo.size(), mctNanos),
+                rate(blocks, mctNanos), rate(blocks * BLOCK, mctNanos) / 1e6);
+        }
+        out.printf("Total: %d vectors, %d passed, %d failed%n", total, total - failures.size(), failures.size());
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Ejecuta una lista de vectores en paralelo y acumula los resultados por archivo
+     * @return Tiempo transcurrido en nanosegundos
+     */
+    private static long runPhase(List<TestVector> vectors, Engine engine,
+                                 Map<String, int[]> perFile, List<String> failures) {
+        String[] results = new String[vectors.size()];
+        long start = System.nanoTime();
+        IntStream.range(0, vectors.size()).parallel()
+            .forEach(i -> results[i] = check(vectors.get(i), engine));
+        long elapsed = System.nanoTime() - start;
+
+        for (int i = 0; i < results.length; i++) {
+            int[] counts = perFile.computeIfAbsent(vectors.get(i).file, f -> new int[2]);
+            if (results[i] == null) {
+                counts[0]++;
+            } else {
+                counts[1]++;
+                failures.add(results[i]);
+            }
+        }
+        return elapsed;
+    }
+
+    /**
+     * @return null si el vector pasa, o la descripción del fallo
+     */
+    private static String check(TestVector v, Engine engine) {
+        try {
+            byte[] input = v.encrypt ? v.plaintext : v.ciphertext;
+            byte[] expected = v.encrypt ? v.ciphertext : v.plaintext;
+            AESKey key = AESEngine.expandKey(v.key);
+            byte[] actual = v.monteCarlo ? monteCarlo(v, key, engine, input) : transform(v, key, engine, input);
+            if (Arrays.equals(actual, expected)) {
+                return null;
+            }
+            return "FAIL " + v.describe() + ": expected " + AESHex.encode(expected) + ", got " + AESHex.encode(actual);
+        } catch (RuntimeException e) {
+            return "FAIL " + v.describe() + ": " + e;
+        }
+    }
+
+    /**
+     * Cifra o descifra uno o varios bloques en ECB o CBC (vectores KAT y MMT)
+     */
+    private static byte[] transform(TestVector v, AESKey key, Engine engine, byte[] input) {
+        if (input.length == 0 || input.length % BLOCK != 0) {
+            throw new IllegalArgumentException("Data length is not a multiple of the block size.");
+        }
+        byte[] output = new byte[input.length];
+        byte[] chain = v.mode == AESCipher.Mode.CBC ? v.iv.clone() : null;
+        for (int off = 0; off < input.length; off += BLOCK) {
+            if (chain == null) {
+                (v.encrypt ? engine.encrypt : engine.decrypt).apply(key, input, off, output, off);
+            } else if (v.encrypt) {
+                xor(chain, 0, input, off);
+                engine.encrypt.apply(key, chain, 0, output, off);
+                System.arraycopy(output, off, chain, 0, BLOCK);
+            } else {
+                engine.decrypt.apply(key, input, off, output, off);
+                xor(output, off, chain, 0);
+                System.arraycopy(input, off, chain, 0, BLOCK);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Repite la iteración interna de la prueba Monte Carlo de AESAVS (sección 6.4)
+     * Devuelve el último bloque de salida (CT[999] o PT[999]).
+     */
+    private static byte[] monteCarlo(TestVector v, AESKey key, Engine engine, byte[] input) {
+        BlockFunction f = v.encrypt ? engine.encrypt : engine.decrypt;
+        byte[] in = input.clone();
+        byte[] out = new byte[BLOCK];
+
+        if (v.mode == AESCipher.Mode.ECB) {
+            // PT[j+1] = CT[j] (o CT[j+1] = PT[j] al descifrar)
+            for (int j = 0; j < MCT_ITERATIONS; j++) {
+                f.apply(key, in, 0, in, 0);
+            }
+            return in;
+        }
+
+        // CBC: la entrada siguiente es el IV en j = 0 y la salida de j - 1 después
+        byte[] previous = v.iv.clone();     // IV, luego la salida de j - 1
+        byte[] chain = v.iv.clone();        // Encadenamiento CBC (IV o último texto cifrado)
+        for (int j = 0; j < MCT_ITERATIONS; j++) {
+            if (v.encrypt) {
+                xor(chain, 0, in, 0);
+                f.apply(key, chain, 0, out, 0);
+                System.arraycopy(out, 0, chain, 0, BLOCK);
+            } else {
+                f.apply(key, in, 0, out, 0);
+                xor(out, 0, chain, 0);
+                System.arraycopy(in, 0, chain, 0, BLOCK);
+            }
+            // Siguiente entrada = salida anterior; la salida actual pasa a ser la anterior
+            byte[] next = previous;
+            previous = out;
+            out = in;
+            in = next;
+        }
+        return previous;
+    }
+
+    private static void xor(byte[] dst, int dstOff, byte[] src, int srcOff) {
+        for (int i = 0; i < BLOCK; i++) {
+            dst[dstOff + i] ^= src[srcOff + i];
+        }
+    }
+
+    /**
+     * Lee los registros COUNT de un archivo .rsp
+     */
+    private static List<TestVector> parse(Path file, AESCipher.Mode mode, boolean monteCarlo) throws IOException {
+        String name = file.getFileName().toString();
+        List<TestVector> vectors = new ArrayList<>();
+        Map<String, String> fields = new LinkedHashMap<>();
+        boolean encrypt = true;
+
+        for (String raw : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            String line = raw.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.startsWith("[")) {
+                flush(name, mode, monteCarlo, encrypt, fields, vectors);
+                if (line.equalsIgnoreCase("[ENCRYPT]")) {
+                    encrypt = true;
+                } else if (line.equalsIgnoreCase("[DECRYPT]")) {
+                    encrypt = false;
+                }
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (eq < 0) {
+                continue;
+            }
+            String field = line.substring(0, eq).trim().toUpperCase();
+            if (field.equals("COUNT")) {
+                flush(name, mode, monteCarlo, encrypt, fields, vectors);
+            }
+            fields.put(field, line.substring(eq + 1).trim());
+        }
+        flush(name, mode, monteCarlo, encrypt, fields, vectors);
+        return vectors;
+    }
+
+    private static void flush(String file, AESCipher.Mode mode, boolean monteCarlo, boolean encrypt,
+                              Map<String, String> fields, List<TestVector> vectors) {
+        if (fields.containsKey("COUNT") && fields.containsKey("KEY")
+                && fields.containsKey("PLAINTEXT") && fields.containsKey("CIPHERTEXT")) {
+            byte[] iv = null;
+            if (mode == AESCipher.Mode.CBC) {
+                if (!fields.containsKey("IV")) {
+                    throw new IllegalArgumentException(file + ": CBC record without IV at COUNT = " + fields.get("COUNT"));
+                }
+                iv = parseHex(fields.get("IV"));
+            }
+            vectors.add(new TestVector(file, mode, monteCarlo, encrypt, Integer.parseInt(fields.get("COUNT")),
+                parseHex(fields.get("KEY")), iv, parseHex(fields.get("PLAINTEXT")), parseHex(fields.get("CIPHERTEXT"))));
+        }
+        fields.clear();
+    }
+
+    /**
+     * @return El modo del archivo según su prefijo, o null si no es ECB ni CBC
+     */
+    private static AESCipher.Mode modeOf(String name) {
+        String upper = name.toUpperCase();
+        if (upper.startsWith("ECB")) {
+            return AESCipher.Mode.ECB;
+        }
+        if (upper.startsWith("CBC")) {
+            return AESCipher.Mode.CBC;
+        }
+        return null;
+    }
+
+    /**
+     * Añade el archivo, o los .rsp de un directorio en orden alfabético
+     */
+    private static void collect(Path path, List<Path> files) throws IOException {
+        if (!Files.isDirectory(path)) {
+            files.add(path);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            files.addAll(walk.filter(p -> p.toString().toLowerCase().endsWith(".rsp"))
+                             .sorted()
+                             .collect(Collectors.toList()));
+        }
+    }
+
+    private static double rate(long count, long nanos) {
+        return nanos == 0 ? 0.0 : count * 1e9 / nanos;
+    }
+
+    private static byte[] parseHex(String hex) {
+        try {
+            return AESHex.decode(hex);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid hex value: " + hex, e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import javax.security.auth.Destroyable;
+import java.util.Arrays;
+
+/**
+ * Clave AES expandida (calendario de claves)
+ * Se obtiene con {@link AESEngine#expandKey(byte[])} y su contenido no cambia
+ * hasta llamar a {@link #destroy()}, por lo que una misma instancia puede
+ * compartirse entre hilos y reutilizarse para cifrar cualquier número de
+ * bloques. {@link #destroy()} pone a cero el material de clave en el mismo
+ * arreglo, también el de los calendarios derivados; después la instancia no
+ * debe usarse.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESKey implements Destroyable {
+
+    final int nk;               // Longitud de clave en palabras de 32 bits
+    final int nr;               // Numero de rondas
+    // Palabras de la clave expandida: única representación del calendario;
+    // la clave de ronda r son w[4r..4r+3], una palabra big-endian por columna
+    final int[] w;
+
+    // Calendario del cifrado inverso equivalente (FIPS-197, sección 5.3.5), se calcula
+    // una sola vez bajo demanda; una carrera entre hilos solo repite el mismo cálculo
+    private volatile int[] dw;
+
+    // Claves de ronda repetidas a lo ancho del vector para AESVectorEngine, también bajo demanda
+    private volatile byte[] lanes;
+
+    private volatile boolean destroyed;
+
+    AESKey(int nk, int nr, int[] w) {
+        this.nk = nk;
+        this.nr = nr;
+        this.w = w;
+    }
+
+    /**
+     * Claves de ronda para el cifrado inverso equivalente, ya en el orden de uso:
+     * las palabras de la ronda Nr primero y las de la ronda 0 al final; las rondas
+     * intermedias llevan InvMixColumns aplicado para que el descifrado pueda usar
+     * las mismas tablas que el cifrado.
+     */
+    int[] decryptionWords() {
+        int[] d = dw;
+        if (d == null) {
+            checkNotDestroyed();
+            d = new int[w.length];
+            for (int round = 0; round <= nr; round++) {
+                int src = (nr - round) * 4;
+                for (int i = 0; i < 4; i++) {
+                    int word = w[src + i];
+                    d[round * 4 + i] = (round == 0 || round == nr) ? word : AESEngine.invMixColumnWord(word);
+                }
+            }
+            dw = d;
+            // destroy() pudo ejecutarse durante el cálculo sin ver este calendario
+            if (destroyed) {
+                Arrays.fill(d, 0);
+                dw = null;
+                checkNotDestroyed();
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Claves de ronda en bytes, cada una repetida hasta llenar {@code width}
+     * bytes (un vector), {@code width} bytes por ronda desde la ronda 0
+     * @param width Ancho del vector en bytes, múltiplo de 16
+     */
+    byte[] replicatedRoundKeys(int width) {
+        byte[] r = lanes;
+        if (r == null || r.length != (nr + 1) * width) {
+            checkNotDestroyed();
+            r = new byte[(nr + 1) * width];
+            for (int round = 0; round <= nr; round++) {
+                for (int i = 0; i < width; i++) {
+                    r[round * width + i] = (byte) roundKeyByte(round, i & 15);
+                }
+            }
+            lanes = r;
+            // Igual que en decryptionWords(): destroy() pudo no ver este arreglo
+            if (destroyed) {
+                Arrays.fill(r, (byte) 0);
+                lanes = null;
+                checkNotDestroyed();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return Longitud de la clave en palabras de 32 bits (Nk)
+     */
+    public int getNk() {
+        return nk;
+    }
+
+    /**
+     * @return Numero de rondas (Nr)
+     */
+    public int getNr() {
+        return nr;
+    }
+
+    /**
+     * @return Copia de las palabras de la clave expandida w[0..Nb*(Nr+1)-1]
+     */
+    public int[] getWords() {
+        checkNotDestroyed();
+        return w.clone();
+    }
+
+    /**
+     * @param round Número de ronda (0..Nr)
+     * @return Clave de ronda de 16 bytes, derivada de las palabras en cada llamada
+     */
+    public byte[] getRoundKey(int round) {
+        checkNotDestroyed();
+        if (round < 0 || round > nr) {
+            throw new IndexOutOfBoundsException("Round out of range: " + round);
+        }
+        byte[] roundKey = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            roundKey[i] = (byte) roundKeyByte(round, i);
+        }
+        return roundKey;
+    }
+
+    /**
+     * Byte i (columna i/4, fila i%4) de la clave de ronda, sin copiar nada
+     */
+    int roundKeyByte(int round, int i) {
+        return (w[4 * round + (i >> 2)] >>> (24 - 8 * (i & 3))) & 0xFF;
+    }
+
+    /**
+     * Sobrescribe con ceros todas las claves de ronda
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(w, 0);
+        int[] d = dw;
+        if (d != null) {
+            Arrays.fill(d, 0);
+            dw = null;
+        }
+        byte[] r = lanes;
+        if (r != null) {
+            Arrays.fill(r, (byte) 0);
+            lanes = null;
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private void checkNotDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Key schedule has been destroyed.");
+        }
+    }
+}
@@ -0,0 +1,318 @@
+import javax.security.auth.Destroyable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Expansión de muchas claves a la vez para cargas con una clave distinta por mensaje
+ *
+ * Las claves se procesan en bloques de {@value #TILE} con una disposición de
+ * estructura de arreglos: dentro de cada bloque, la palabra i de sus
+ * {@value #TILE} claves ocupa posiciones consecutivas. Así cada paso de la
+ * expansión (FIPS-197, sección 5.2) recorre todas las claves del bloque en el
+ * mismo bucle: RotWord, SubWord y Rcon se deciden una vez por palabra y no por
+ * clave, y las palabras que solo son un XOR forman bucles sin saltos que el
+ * JIT puede vectorizar. Todas las claves quedan en un único int[] contiguo.
+ *
+ * A partir de {@value #PARALLEL_MIN_KEYS} claves los bloques se reparten entre
+ * los hilos del ForkJoinPool común; cada hilo escribe un tramo propio del arreglo.
+ *
+ * Uso: java AESKeyBatch [--keys N] [--bits 128|192|256] [--seconds N]
+ * (mide claves/s de expandKey clave a clave frente al lote secuencial y paralelo)
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESKeyBatch implements Destroyable {
+
+    /** Claves por bloque de la disposición SoA */
+    static final int TILE = 64;
+
+    /** Número de claves a partir del cual la expansión se reparte entre núcleos */
+    static final int PARALLEL_MIN_KEYS = 16 * 1024;
+
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int count;
+    private final int nk;
+    private final int nr;
+    private final int wordsPerKey;
+
+    // Bloque b, palabra i, clave t del bloque: words[(b * wordsPerKey + i) * TILE + t]
+    final int[] words;
+
+    private volatile boolean destroyed;
+
+    private static volatile long sink;
+
+    private AESKeyBatch(int count, int nk) {
+        this.count = count;
+        this.nk = nk;
+        this.nr = AESEngine.rounds(nk);
+        this.wordsPerKey = AESEngine.AES_NB * (nr + 1);
+        long length = (long) ((count + TILE - 1) / TILE) * wordsPerKey * TILE;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many keys for one batch.");
+        }
+        this.words = new int[(int) length];
+    }
+
+    /**
+     * Expande todas las claves de un arreglo
+     * @param keys Claves concatenadas, todas de la misma longitud
+     * @param keyLength Longitud de cada clave en bytes (16, 24 o 32)
+     * @return El lote de claves expandidas
+     */
+    public static AESKeyBatch expand(byte[] keys, int keyLength) {
+        return expand(keys, keyLength, true);
+    }
+
+    /**
+     * @param parallel false fuerza la expansión en el hilo actual
+     */
+    static AESKeyBatch expand(byte[] keys, int keyLength, boolean parallel) {
+        if (!AESEngine.isValidKeyLength(keyLength)) {
+            throw new IllegalArgumentException(
+                "Invalid key length. A 128, 192 or 256-bit key (16, 24 or 32 bytes) is required.");
+        }
+        if (keys.length % keyLength != 0) {
+            throw new IllegalArgumentException("Key material length not multiple of the key length.");
+        }
+        AESKeyBatch batch = new AESKeyBatch(keys.length / keyLength, keyLength / 4);
+        int tiles = (batch.count + TILE - 1) / TILE;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (!parallel || parallelism < 2 || batch.count < PARALLEL_MIN_KEYS) {
+            for (int b = 0; b < tiles; b++) {
+                batch.expandTile(keys, b);
+            }
+        } else {
+            int step = Math.max(1, tiles / (parallelism * 4));
+            int chunks = (tiles + step - 1) / step;
+            IntStream.range(0, chunks).parallel().forEach(c -> {
+                int end = Math.min(tiles, (c + 1) * step);
+                for (int b = c * step; b < end; b++) {
+                    batch.expandTile(keys, b);
+                }
+            });
+        }
+        return batch;
+    }
+
+    /**
+     * Expande las {@value #TILE} claves del bloque b; las posiciones sobrantes
+     * del último bloque se expanden a partir de ceros y no se exponen
+     */
+    private void expandTile(byte[] keys, int b) {
+        int[] w = words;
+        int base = b * wordsPerKey * TILE;
+        int first = b * TILE;
+        int n = Math.min(TILE, count - first);
+        int keyLength = 4 * nk;
+
+        // Las primeras Nk palabras de cada clave son la clave original
+        for (int t = 0; t < n; t++) {
+            int src = (first + t) * keyLength;
+            for (int i = 0; i < nk; i++) {
+                w[base + i * TILE + t] = (int) INT_BE.get(keys, src + 4 * i);
+            }
+        }
+
+        // Resto de palabras: cada decisión de la sección 5.2 se toma una vez para todo el bloque
+        for (int i = nk; i < wordsPerKey; i++) {
+            int cur = base + i * TILE;
+            int prev = cur - TILE;
+            int back = cur - nk * TILE;
+            if (i % nk == 0) {
+                int rcon = AESEngine.RCON[i / nk - 1];
+                for (int t = 0; t < TILE; t++) {
+                    w[cur + t] = w[back + t] ^ AESEngine.SubWord(AESEngine.RotWord(w[prev + t])) ^ rcon;
+                }
+            } else if (nk > 6 && i % nk == 4) {
+                // Solo AES-256: SubWord adicional a mitad de cada grupo de Nk palabras
+                for (int t = 0; t < TILE; t++) {
+                    w[cur + t] = w[back + t] ^ AESEngine.SubWord(w[prev + t]);
+                }
+            } else {
+                for (int t = 0; t < TILE; t++) {
+                    w[cur + t] = w[back + t] ^ w[prev + t];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Número de claves del lote
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Longitud de cada clave en palabras de 32 bits (Nk)
+     */
+    public int getNk() {
+        return nk;
+    }
+
+    /**
+     * @return Numero de rondas (Nr)
+     */
+    public int getNr() {
+        return nr;
+    }
+
+    /**
+     * @param index Número de clave (0..size()-1)
+     * @param i Número de palabra (0..Nb*(Nr+1)-1)
+     * @return La palabra w[i] de la clave expandida
+     */
+    public int word(int index, int i) {
+        checkNotDestroyed();
+        if (index < 0 || index >= count || i < 0 || i >= wordsPerKey) {
+            throw new IndexOutOfBoundsException("Key or word index out of range.");
+        }
+        return words[((index / TILE) * wordsPerKey + i) * TILE + index % TILE];
+    }
+
+    /**
+     * Copia el calendario de una clave a un {@link AESKey} independiente del lote
+     * @param index Número de clave (0..size()-1)
+     * @return La clave expandida, lista para cifrar
+     */
+    public AESKey key(int index) {
+        checkNotDestroyed();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Key index out of range: " + index);
+        }
+        int[] w = new int[wordsPerKey];
+        int src = (index / TILE) * wordsPerKey * TILE + index % TILE;
+        for (int i = 0; i < wordsPerKey; i++) {
+            w[i] = words[src + i * TILE];
+        }
+        return new AESKey(nk, nr, w);
+    }
+
+    /**
+     * Sobrescribe con ceros todas las claves del lote
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Arrays.fill(words, 0);
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    private void checkNotDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException("Key batch has been destroyed.");
+        }
+    }
+
+    public static void main(String[] args) {
+        int keys = 64 * 1024;
+        int bits = 128;
+        int seconds = 3;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--keys":
+                        keys = Integer.parseInt(args[++i]);
+                        break;
+                    case "--bits":
+                        bits = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        System.exit(usage("Unknown argument: " + args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            System.exit(usage("Invalid or missing value for " + args[args.length - 1]));
+        }
+        if (keys <= 0 || seconds <= 0 || !AESEngine.isValidKeyLength(bits / 8) || bits % 8 != 0) {
+            System.exit(usage("--keys and --seconds must be positive and --bits 128, 192 or 256."));
+        }
+        int keyLength = bits / 8;
+        if (keys > (Integer.MAX_VALUE - 8) / keyLength) {
+            System.exit(usage("--keys too large for " + bits + "-bit keys."));
+        }
+
+        byte[] material = new byte[keys * keyLength];
+        new SecureRandom().nextBytes(material);
+        if (!matchesReference(material, keyLength)) {
+            System.err.println("Batch key schedule differs from AESEngine.expandKey.");
+            System.exit(1);
+        }
+
+        System.out.printf("AES-%d, %d keys per batch, %d processors%n", bits, keys,
+            Runtime.getRuntime().availableProcessors());
+        long limit = seconds * 1_000_000_000L;
+        report("expandKey (one key at a time)", keys, limit, () -> {
+            long acc = 0;
+            byte[] key = new byte[keyLength];
+            for (int off = 0; off < material.length; off += keyLength) {
+                System.arraycopy(material, off, key, 0, keyLength);
+                acc += AESEngine.expandKey(key).w[4];
+            }
+            return acc;
+        });
+        report("batch, sequential", keys, limit, () -> expand(material, keyLength, false).words[TILE * 4]);
+        report("batch, parallel", keys, limit, () -> expand(material, keyLength, true).words[TILE * 4]);
+    }
+
+    @FunctionalInterface
+    private interface Pass {
+        long run();
+    }
+
+    /**
+     * Repite la pasada hasta agotar el tiempo; la primera mitad sirve de calentamiento
+     */
+    private static void report(String name, int keys, long limit, Pass pass) {
+        long warmEnd = System.nanoTime() + limit / 2;
+        while (System.nanoTime() < warmEnd) {
+            sink += pass.run();
+        }
+        long passes = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += pass.run();
+            passes++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < limit / 2);
+        double keysPerSec = passes * (double) keys * 1e9 / elapsed;
+        System.out.printf("%-32s %14.0f keys/s%n", name, keysPerSec);
+    }
+
+    /**
+     * Compara una muestra de claves del lote (incluido el último bloque incompleto) con expandKey
+     */
+    private static boolean matchesReference(byte[] material, int keyLength) {
+        AESKeyBatch batch = expand(material, keyLength);
+        int count = batch.size();
+        for (int index = 0; index < count; index += 1 + count / 1000) {
+            int[] expected = AESEngine.expandKey(Arrays.copyOfRange(material, index * keyLength,
+                (index + 1) * keyLength)).w;
+            if (!Arrays.equals(expected, batch.key(index).w)) {
+                return false;
+            }
+        }
+        return Arrays.equals(AESEngine.expandKey(Arrays.copyOfRange(material, material.length - keyLength,
+            material.length)).w, batch.key(count - 1).w);
+    }
+
+    private static int usage(String message) {
+        System.err.println("Error: " + message);
+        System.err.println("Usage: java AESKeyBatch [--keys N] [--bits 128|192|256] [--seconds N]");
+        return 1;
+    }
+}
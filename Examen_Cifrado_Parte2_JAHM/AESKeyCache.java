@@ -0,0 +1,320 @@
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché concurrente y acotada de calendarios de claves expandidos
+ *
+ * Evita repetir la expansión de clave cuando las mismas claves se usan una y
+ * otra vez (por ejemplo, una clave por cliente en un servicio). Las entradas
+ * se reparten en segmentos independientes, cada uno un LinkedHashMap en orden
+ * de acceso protegido por su propio candado, de modo que cada segmento expulsa
+ * su entrada usada menos recientemente (LRU) al llenarse.
+ *
+ * Los bytes de clave se comparan en tiempo constante con
+ * {@link MessageDigest#isEqual} y el hash de búsqueda usa una semilla
+ * aleatoria por instancia. Una entrada expulsada se pone a cero en cuanto no
+ * queda ningún {@link Lease} abierto sobre ella, así que un calendario nunca
+ * se borra mientras otro hilo lo está usando. Cada entrada guarda además,
+ * construido la primera vez que se pide, el {@link AESGcmMode} de la clave
+ * con sus tablas GHASH, que se borra junto con el calendario.
+ *
+ * <pre>
+ * try (AESKeyCache.Lease lease = cache.acquire(keyBytes)) {
+ *     AESTableEngine.encryptBlock(lease.getKey(), in, 0, out, 0);
+ * }
+ * </pre>
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESKeyCache {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int seed = new SecureRandom().nextInt();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries Número máximo de calendarios retenidos
+     */
+    public AESKeyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        // Número de segmentos: potencia de dos, sin superar el tamaño de la caché
+        int count = 1;
+        while (count < DEFAULT_SEGMENTS && count * 2 <= maxEntries) {
+            count *= 2;
+        }
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            // Reparto exacto de maxEntries entre los segmentos
+            segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Obtiene el calendario de una clave, expandiéndola solo si no está en caché
+     * El calendario es válido hasta cerrar el préstamo.
+     * @param keyBytes Clave de 16, 24 o 32 bytes (no se conserva la referencia)
+     * @return Préstamo que debe cerrarse al terminar de usar la clave
+     */
+    public Lease acquire(byte[] keyBytes) {
+        if (!AESEngine.isValidKeyLength(keyBytes.length)) {
+            throw new IllegalArgumentException("Invalid key length. A 128, 192 or 256-bit key (16, 24 or 32 bytes) is required.");
+        }
+        int hash = hash(keyBytes);
+        Segment segment = segments[(hash >>> 16) & (segments.length - 1)];
+        KeyId probe = new KeyId(keyBytes, hash);
+
+        synchronized (segment) {
+            Entry entry = segment.map.get(probe);
+            if (entry != null) {
+                hits.increment();
+                entry.leases++;
+                return new Lease(segment, entry);
+            }
+        }
+
+        // Fallo: expandir fuera del candado para no bloquear el segmento
+        misses.increment();
+        AESKey key = AESEngine.expandKey(keyBytes);
+        KeyId id = new KeyId(keyBytes.clone(), hash);
+
+        synchronized (segment) {
+            Entry entry = segment.map.get(probe);
+            if (entry != null) {
+                // Otro hilo la insertó mientras tanto; se descarta la copia propia
+                key.destroy();
+                Arrays.fill(id.bytes, (byte) 0);
+                entry.leases++;
+                return new Lease(segment, entry);
+            }
+            entry = new Entry(id, key);
+            entry.leases++;
+            segment.map.put(id, entry);
+            evictOverflow(segment);
+            return new Lease(segment, entry);
+        }
+    }
+
+    /**
+     * Expulsa todas las entradas; las que estén prestadas se borran al devolverse
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Entry entry : segment.map.values()) {
+                    retire(entry);
+                }
+                segment.map.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Número de calendarios retenidos
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits();
+        long m = getMisses();
+        return String.format("AESKeyCache[size=%d, hits=%d, misses=%d, evictions=%d, hit rate=%.1f%%]",
+            size(), h, m, getEvictions(), h + m == 0 ? 0.0 : 100.0 * h / (h + m));
+    }
+
+    /**
+     * Expulsa las entradas menos usadas del segmento hasta respetar su capacidad
+     * Se llama con el candado del segmento tomado.
+     */
+    private void evictOverflow(Segment segment) {
+        Iterator<Entry> it = segment.map.values().iterator();
+        while (segment.map.size() > segment.capacity && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            evictions.increment();
+            retire(eldest);
+        }
+    }
+
+    /**
+     * Marca una entrada como expulsada y la borra si nadie la está usando
+     */
+    private static void retire(Entry entry) {
+        entry.evicted = true;
+        if (entry.leases == 0) {
+            entry.wipe();
+        }
+    }
+
+    /**
+     * Hash de búsqueda con semilla aleatoria (FNV-1a con mezcla final)
+     */
+    private int hash(byte[] key) {
+        int h = seed ^ 0x811C9DC5;
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * Préstamo de un calendario de la caché
+     * Cerrarlo más de una vez no tiene efecto. No debe compartirse entre hilos
+     * sin sincronización externa, aunque la clave prestada sí puede usarse desde varios.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final Segment segment;
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Segment segment, Entry entry) {
+            this.segment = segment;
+            this.entry = entry;
+        }
+
+        /**
+         * @return El calendario de claves; no debe usarse tras cerrar el préstamo
+         */
+        public AESKey getKey() {
+            if (closed) {
+                throw new IllegalStateException("Lease already closed.");
+            }
+            return entry.key;
+        }
+
+        /**
+         * @return El GCM de la clave, compartido por todos los préstamos de la
+         *         entrada; no debe usarse tras cerrar el préstamo
+         */
+        public AESGcmMode getGcm() {
+            if (closed) {
+                throw new IllegalStateException("Lease already closed.");
+            }
+            return entry.gcm();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            synchronized (segment) {
+                entry.leases--;
+                if (entry.evicted && entry.leases == 0) {
+                    entry.wipe();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bytes de clave con igualdad en tiempo constante
+     */
+    private static final class KeyId {
+
+        final byte[] bytes;
+        final int hash;
+
+        KeyId(byte[] bytes, int hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof KeyId && MessageDigest.isEqual(bytes, ((KeyId) o).bytes);
+        }
+    }
+
+    private static final class Entry {
+
+        final KeyId id;
+        final AESKey key;
+        int leases;         // Préstamos abiertos (protegido por el candado del segmento)
+        boolean evicted;
+        private volatile AESGcmMode gcm;   // Se construye bajo demanda
+
+        Entry(KeyId id, AESKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        AESGcmMode gcm() {
+            AESGcmMode g = gcm;
+            if (g == null) {
+                synchronized (this) {
+                    g = gcm;
+                    if (g == null) {
+                        g = new AESGcmMode(key);
+                        gcm = g;
+                    }
+                }
+            }
+            return g;
+        }
+
+        /**
+         * Se llama sin préstamos abiertos, así que nadie puede estar construyendo el GCM
+         */
+        void wipe() {
+            key.destroy();
+            Arrays.fill(id.bytes, (byte) 0);
+            AESGcmMode g = gcm;
+            if (g != null) {
+                g.wipe();
+                gcm = null;
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        final int capacity;
+        final Map<KeyId, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+}
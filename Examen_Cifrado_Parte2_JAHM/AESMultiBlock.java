@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+/**
+ * Punto único de cifrado y descifrado de varios bloques ECB contiguos
+ *
+ * Al cargar la clase se elige el motor: si el módulo incubadora
+ * {@code jdk.incubator.vector} está disponible (JDK 16 o posterior, ejecutando
+ * con {@code --add-modules jdk.incubator.vector}) y la clase
+ * {@code AESVectorEngine} fue compilada, se usa el motor SIMD que procesa
+ * varios bloques por vector. En cualquier otro caso, o si el motor vectorial
+ * no supera la autoprueba inicial, se usa la ruta escalar de tablas T con
+ * cuatro bloques entrelazados ({@link AESTableEngine#encryptBlocks}). La
+ * propiedad de sistema {@code -Daes.vector=false} fuerza la ruta escalar.
+ *
+ * El motor vectorial se carga por reflexión porque el resto del proyecto debe
+ * compilar en Java 11, donde el módulo no existe.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESMultiBlock {
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+
+    private static final Engine ENGINE = selectEngine();
+
+    private AESMultiBlock() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Motor de varios bloques; {@code len} es siempre múltiplo de 16 y la
+     * salida puede ser el mismo arreglo (y desplazamiento) que la entrada
+     */
+    interface Engine {
+        String name();
+
+        void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len);
+
+        void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len);
+    }
+
+    /**
+     * Ruta escalar: tablas T con cuatro bloques entrelazados por ronda
+     */
+    static final class TableEngine implements Engine {
+        @Override
+        public String name() {
+            return "T-table x4";
+        }
+
+        @Override
+        public void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+            AESTableEngine.encryptBlocks(key, in, inOff, out, outOff, len);
+        }
+
+        @Override
+        public void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+            AESTableEngine.decryptBlocks(key, in, inOff, out, outOff, len);
+        }
+    }
+
+    /**
+     * @return Nombre del motor elegido al cargar la clase
+     */
+    public static String engineName() {
+        return ENGINE.name();
+    }
+
+    /**
+     * Cifra {@code len} bytes (múltiplo de 16) bloque a bloque en modo ECB
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArguments(in, inOff, out, outOff, len);
+        ENGINE.encryptBlocks(key, in, inOff, out, outOff, len);
+    }
+
+    /**
+     * Descifra {@code len} bytes (múltiplo de 16) bloque a bloque en modo ECB
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArguments(in, inOff, out, outOff, len);
+        ENGINE.decryptBlocks(key, in, inOff, out, outOff, len);
+    }
+
+    private static void checkArguments(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (len % BLOCK != 0) {
+            throw new IllegalArgumentException("Input length not multiple of 16 bytes.");
+        }
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.length - len || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+    }
+
+    /**
+     * Intenta cargar el motor vectorial y lo valida contra la ruta escalar
+     */
+    private static Engine selectEngine() {
+        Engine scalar = new TableEngine();
+        if (!Boolean.parseBoolean(System.getProperty("aes.vector", "true"))) {
+            return scalar;
+        }
+        try {
+            Engine vector = (Engine) Class.forName("AESVectorEngine").getDeclaredConstructor().newInstance();
+            return selfTest(vector, scalar) ? vector : scalar;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Clase no compilada o módulo jdk.incubator.vector no disponible
+            return scalar;
+        }
+    }
+
+    /**
+     * Compara ambos motores con las tres longitudes de clave sobre un tramo
+     * que no es múltiplo del ancho de vector, para cubrir también la cola
+     */
+    private static boolean selfTest(Engine candidate, Engine reference) {
+        byte[] data = new byte[37 * BLOCK];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 0x9E + 0x37);
+        }
+        for (int keyLen = 16; keyLen <= 32; keyLen += 8) {
+            byte[] keyBytes = new byte[keyLen];
+            for (int i = 0; i < keyLen; i++) {
+                keyBytes[i] = (byte) (i * 0x1D + keyLen);
+            }
+            AESKey key = AESEngine.expandKey(keyBytes);
+
+            byte[] expected = new byte[data.length];
+            byte[] actual = new byte[data.length];
+            reference.encryptBlocks(key, data, 0, expected, 0, data.length);
+            candidate.encryptBlocks(key, data, 0, actual, 0, data.length);
+            if (!Arrays.equals(expected, actual)) {
+                return false;
+            }
+            reference.decryptBlocks(key, data, 0, expected, 0, data.length);
+            candidate.decryptBlocks(key, data, 0, actual, 0, data.length);
+            if (!Arrays.equals(expected, actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
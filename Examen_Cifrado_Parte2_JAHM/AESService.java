@@ -0,0 +1,675 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.AEADBadTagException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio local de cifrado sobre HTTP/1.1
+ *
+ * Expone el motor sin interfaz gráfica en un {@link HttpServer} embebido que
+ * escucha en 127.0.0.1. Cada petición se atiende en un hilo virtual cuando la
+ * JVM los ofrece (Java 21 o posterior; se detectan por reflexión para seguir
+ * compilando en Java 11) y en un grupo de hilos en caché en caso contrario.
+ * Los calendarios de claves se reutilizan con {@link AESKeyCache}.
+ *
+ * La clave, el IV y los datos adicionales autenticados viajan en hexadecimal
+ * en las cabeceras X-AES-Key, X-AES-IV y X-AES-AAD:
+ * <pre>
+ * POST /ctr/encrypt, /ctr/decrypt  contador inicial de 16 bytes
+ * POST /gcm/encrypt                IV de 12 bytes; responde texto cifrado || etiqueta
+ * POST /gcm/decrypt                cuerpo texto cifrado || etiqueta
+ * GET  /stats                      peticiones, errores, bytes, latencia p50/p99 y caché
+ * </pre>
+ * CTR y el cifrado GCM procesan el cuerpo por trozos a medida que llega y
+ * envían cada trozo en cuanto está listo. El descifrado GCM sí acumula el
+ * mensaje (hasta {@link #MAX_GCM_DECRYPT}), porque el texto plano no debe
+ * salir del servicio antes de verificar la etiqueta.
+ *
+ * El modo --load lanza miles de clientes concurrentes contra el servicio
+ * (uno embebido si no se indica --url) e informa peticiones/s y la latencia
+ * p50/p99 vista por los clientes.
+ *
+ * Uso: java AESService [--port N] [--cache N]
+ *      java AESService --load [--url URL] [--clients N] [--seconds N] [--size N] [--path P] [--keys N]
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESService {
+
+    static final int DEFAULT_PORT = 8080;
+
+    // Trozo de lectura del cuerpo (múltiplo de 16 para que CTR avance por bloques completos)
+    private static final int CHUNK = 64 * 1024;
+
+    // Tamaño máximo de un mensaje GCM a descifrar, que se acumula antes de verificar
+    static final int MAX_GCM_DECRYPT = 16 * 1024 * 1024;
+
+    private static final int CTR_IV_LENGTH = 16;
+    private static final int GCM_IV_LENGTH = 12;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final AESKeyCache cache;
+
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    /**
+     * Crea el servicio sin arrancarlo
+     * @param port Puerto local (0 para uno libre)
+     * @param cacheSize Número máximo de calendarios de claves en caché
+     */
+    AESService(int port, int cacheSize) throws IOException {
+        // Sin Nagle: las cabeceras y el cuerpo salen en escrituras separadas y,
+        // con el ACK retardado del cliente, cada respuesta esperaría unos 40 ms.
+        // Con el límite por defecto de 200 conexiones inactivas, el servidor
+        // cierra conexiones que miles de clientes con keep-alive van a reutilizar.
+        // Ambas se leen una sola vez, al crear el primer HttpServer de la JVM.
+        defaultProperty("sun.net.httpserver.nodelay", "true");
+        defaultProperty("sun.net.httpserver.maxIdleConnections", "16384");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        executor = newExecutor();
+        virtualThreads = !(executor instanceof ThreadPoolExecutor);
+        cache = new AESKeyCache(cacheSize);
+
+        server.setExecutor(executor);
+        server.createContext("/ctr/encrypt", exchange -> handle(exchange, this::ctr));
+        server.createContext("/ctr/decrypt", exchange -> handle(exchange, this::ctr));
+        server.createContext("/gcm/encrypt", exchange -> handle(exchange, this::gcmEncrypt));
+        server.createContext("/gcm/decrypt", exchange -> handle(exchange, this::gcmDecrypt));
+        server.createContext("/stats", this::stats);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        cache.clear();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Punto de entrada de la línea de comandos
+     * @param args [--port N] [--cache N] o --load con sus opciones
+     * @return Código de salida del proceso; en modo servidor no vuelve hasta que se detiene la JVM
+     */
+    static int run(String[] args) {
+        int port = DEFAULT_PORT;
+        int cacheSize = 1024;
+        boolean load = false;
+        String url = null;
+        int clients = 1000;
+        int seconds = 10;
+        int size = 4096;
+        int keys = 16;
+        String path = "/gcm/encrypt";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--serve":
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--cache":
+                        cacheSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--load":
+                        load = true;
+                        break;
+                    case "--url":
+                        url = args[++i];
+                        break;
+                    case "--clients":
+                        clients = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                    case "--size":
+                        size = Integer.parseInt(args[++i]);
+                        break;
+                    case "--keys":
+                        keys = Integer.parseInt(args[++i]);
+                        break;
+                    case "--path":
+                        path = args[++i];
+                        break;
+                    default:
+                        return usage("Unknown argument: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return usage("Invalid or missing value for " + args[args.length - 1]);
+        }
+        if (cacheSize <= 0 || clients <= 0 || seconds <= 0 || size < 0 || keys <= 0) {
+            return usage("--cache, --clients, --seconds and --keys must be positive.");
+        }
+        if (!path.equals("/ctr/encrypt") && !path.equals("/ctr/decrypt") && !path.equals("/gcm/encrypt")) {
+            return usage("Invalid load path: " + path + ". Use /ctr/encrypt, /ctr/decrypt or /gcm/encrypt.");
+        }
+
+        try {
+            if (load) {
+                return runLoad(url, clients, seconds, size, keys, path, cacheSize);
+            }
+            AESService service = new AESService(port, cacheSize);
+            CountDownLatch stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                service.stop();
+                stopped.countDown();
+            }));
+            service.start();
+            System.out.println("Listening on http://127.0.0.1:" + service.getPort() + " ("
+                + service.executorName() + ", " + AESMultiBlock.engineName() + ")");
+            stopped.await();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    // ---------------------------------------------------------------------
+    // Peticiones
+    // ---------------------------------------------------------------------
+
+    /**
+     * Manejador de un endpoint de cifrado; devuelve los bytes del cuerpo leídos
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        long serve(HttpExchange exchange) throws IOException, RequestException;
+    }
+
+    /**
+     * Error del cliente que se responde con el código HTTP indicado
+     */
+    private static final class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Comprueba el método, ejecuta el endpoint y registra la latencia de la petición completa
+     */
+    private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+        long start = System.nanoTime();
+        requests.increment();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                throw new RequestException(405, "Use POST.");
+            }
+            bytesIn.add(endpoint.serve(exchange));
+        } catch (RequestException e) {
+            errors.increment();
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            errors.increment();
+            if (exchange.getResponseCode() == -1) {
+                sendError(exchange, 500, "Internal error.");
+            }
+            throw e;
+        } finally {
+            exchange.close();
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * CTR en ambos sentidos: el cuerpo se cifra trozo a trozo con el contador
+     * del bloque correspondiente y la salida se envía a medida que se produce
+     */
+    private long ctr(HttpExchange exchange) throws IOException, RequestException {
+        byte[] iv = header(exchange, "X-AES-IV", CTR_IV_LENGTH);
+        long hi = AESCtrMode.counterHigh(iv);
+        long lo = AESCtrMode.counterLow(iv);
+
+        try (AESKeyCache.Lease lease = acquire(exchange)) {
+            AESKey key = lease.getKey();
+            long length = requestLength(exchange);
+            exchange.sendResponseHeaders(200, responseLength(length));
+
+            byte[] buffer = new byte[CHUNK];
+            long done = 0;
+            try (InputStream in = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+                int n;
+                while ((n = readChunk(in, buffer)) > 0) {
+                    AESCtrMode.processRange(key, hi, lo, done / AESEngine.BLOCK_SIZE, false, buffer, 0, buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    done += n;
+                }
+            }
+            bytesOut.add(done);
+            return done;
+        }
+    }
+
+    /**
+     * Cifrado GCM por trozos; la etiqueta se envía al final del cuerpo
+     */
+    private long gcmEncrypt(HttpExchange exchange) throws IOException, RequestException {
+        byte[] iv = header(exchange, "X-AES-IV", GCM_IV_LENGTH);
+        byte[] aad = optionalHeader(exchange, "X-AES-AAD");
+
+        try (AESKeyCache.Lease lease = acquire(exchange)) {
+            AESGcmMode.Session session = lease.getGcm().start(iv, aad, true);
+            long length = requestLength(exchange);
+            exchange.sendResponseHeaders(200, length < 0 ? 0 : length + AESGcmMode.TAG_LENGTH);
+
+            byte[] buffer = new byte[CHUNK];
+            long done = 0;
+            try (InputStream in = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+                int n;
+                while ((n = readChunk(in, buffer)) > 0) {
+                    session.update(buffer, 0, n, buffer, 0);
+                    out.write(buffer, 0, n);
+                    done += n;
+                }
+                out.write(session.finish());
+            }
+            bytesOut.add(done + AESGcmMode.TAG_LENGTH);
+            return done;
+        }
+    }
+
+    /**
+     * Descifrado GCM: se acumula el mensaje, se verifica la etiqueta y solo
+     * entonces se envía el texto plano
+     */
+    private long gcmDecrypt(HttpExchange exchange) throws IOException, RequestException {
+        byte[] iv = header(exchange, "X-AES-IV", GCM_IV_LENGTH);
+        byte[] aad = optionalHeader(exchange, "X-AES-AAD");
+
+        long length = requestLength(exchange);
+        if (length > MAX_GCM_DECRYPT + AESGcmMode.TAG_LENGTH) {
+            throw new RequestException(413, "GCM message too large to decrypt.");
+        }
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body.length < AESGcmMode.TAG_LENGTH) {
+            throw new RequestException(400, "Authentication tag missing.");
+        }
+
+        byte[] plaintext;
+        try (AESKeyCache.Lease lease = acquire(exchange)) {
+            plaintext = lease.getGcm().decrypt(iv, aad, body);
+        } catch (AEADBadTagException e) {
+            throw new RequestException(400, "Authentication failed.");
+        }
+        exchange.sendResponseHeaders(200, responseLength(plaintext.length));
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(plaintext);
+        }
+        bytesOut.add(plaintext.length);
+        return body.length;
+    }
+
+    /**
+     * Contadores del servicio en texto plano, una métrica por línea
+     */
+    private void stats(HttpExchange exchange) throws IOException {
+        long[] p = latencies.percentiles(0.50, 0.99);
+        String text = "executor " + executorName() + "\n"
+            + "engine " + AESMultiBlock.engineName() + "\n"
+            + "requests " + requests.sum() + "\n"
+            + "errors " + errors.sum() + "\n"
+            + "bytes_in " + bytesIn.sum() + "\n"
+            + "bytes_out " + bytesOut.sum() + "\n"
+            + "latency_p50_us " + p[0] / 1000 + "\n"
+            + "latency_p99_us " + p[1] / 1000 + "\n"
+            + "cache_size " + cache.size() + "\n"
+            + "cache_hits " + cache.getHits() + "\n"
+            + "cache_misses " + cache.getMisses() + "\n"
+            + "cache_evictions " + cache.getEvictions() + "\n";
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String executorName() {
+        return virtualThreads ? "virtual threads" : "cached thread pool";
+    }
+
+    private AESKeyCache.Lease acquire(HttpExchange exchange) throws RequestException {
+        byte[] key = header(exchange, "X-AES-Key", -1);
+        try {
+            if (!AESEngine.isValidKeyLength(key.length)) {
+                throw new RequestException(400, "Invalid X-AES-Key. Use 32, 48 or 64 hexadecimal characters.");
+            }
+            return cache.acquire(key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    /**
+     * Cabecera hexadecimal obligatoria
+     * @param length Longitud exigida en bytes, o -1 para cualquiera
+     */
+    private static byte[] header(HttpExchange exchange, String name, int length) throws RequestException {
+        byte[] value = optionalHeader(exchange, name);
+        if (value == null) {
+            throw new RequestException(400, "Missing " + name + " header.");
+        }
+        if (length >= 0 && value.length != length) {
+            throw new RequestException(400, "Invalid " + name + ". " + length + " bytes are required.");
+        }
+        return value;
+    }
+
+    private static byte[] optionalHeader(HttpExchange exchange, String name) throws RequestException {
+        String text = exchange.getRequestHeaders().getFirst(name);
+        if (text == null) {
+            return null;
+        }
+        byte[] value = parseHex(text.trim());
+        if (value == null) {
+            throw new RequestException(400, "Invalid " + name + ". Hexadecimal characters are required.");
+        }
+        return value;
+    }
+
+    /**
+     * @return Content-Length de la petición, o -1 si llega por trozos
+     */
+    private static long requestLength(HttpExchange exchange) throws RequestException {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid Content-Length.");
+        }
+    }
+
+    /**
+     * Longitud para sendResponseHeaders: -1 sin cuerpo y 0 para enviarlo por trozos
+     */
+    private static long responseLength(long length) {
+        return length == 0 ? -1 : Math.max(length, 0);
+    }
+
+    /**
+     * Llena el búfer salvo al final del cuerpo
+     * @return Bytes leídos (0 al final)
+     */
+    private static int readChunk(InputStream in, byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int n = in.read(buffer, filled, buffer.length - filled);
+            if (n < 0) {
+                break;
+            }
+            filled += n;
+        }
+        return filled;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException, RequestException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK];
+        try (InputStream stream = in) {
+            int n;
+            while ((n = stream.read(buffer)) > 0) {
+                if (body.size() + n > MAX_GCM_DECRYPT + AESGcmMode.TAG_LENGTH) {
+                    throw new RequestException(413, "GCM message too large to decrypt.");
+                }
+                body.write(buffer, 0, n);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void defaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+    /**
+     * Hilos virtuales si la JVM los ofrece; si no, un grupo de hilos en caché
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java anterior a 21, o hilos virtuales en vista previa sin --enable-preview
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Latencias
+    // ---------------------------------------------------------------------
+
+    /**
+     * Últimas muestras de latencia en un anillo de tamaño fijo, sin candados
+     */
+    static final class LatencyRecorder {
+        private static final int CAPACITY = 1 << 16;
+
+        private final AtomicLongArray samples = new AtomicLongArray(CAPACITY);
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long nanos) {
+            long i = count.getAndIncrement();
+            samples.set((int) (i & (CAPACITY - 1)), nanos);
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        /**
+         * @param quantiles Cuantiles entre 0 y 1
+         * @return Latencias en nanosegundos de las últimas muestras (0 si no hay)
+         */
+        long[] percentiles(double... quantiles) {
+            int n = (int) Math.min(count.get(), CAPACITY);
+            long[] sorted = new long[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            long[] result = new long[quantiles.length];
+            for (int q = 0; q < quantiles.length && n > 0; q++) {
+                int rank = (int) Math.ceil(quantiles[q] * n) - 1;
+                result[q] = sorted[Math.max(0, Math.min(n - 1, rank))];
+            }
+            return result;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Modo de carga
+    // ---------------------------------------------------------------------
+
+    /**
+     * Lanza {@code clients} clientes que repiten peticiones hasta agotar el
+     * tiempo; sin URL arranca antes un servicio embebido en un puerto libre
+     */
+    private static int runLoad(String url, int clients, int seconds, int size, int keys, String path,
+                               int cacheSize) throws IOException, InterruptedException {
+        AESService embedded = null;
+        if (url == null) {
+            embedded = new AESService(0, cacheSize);
+            embedded.start();
+            url = "http://127.0.0.1:" + embedded.getPort();
+        }
+        URI target = URI.create(url + path);
+
+        SecureRandom random = new SecureRandom();
+        byte[][] keyPool = new byte[keys][16];
+        for (byte[] key : keyPool) {
+            random.nextBytes(key);
+        }
+        byte[] payload = new byte[size];
+        random.nextBytes(payload);
+        int ivLength = path.startsWith("/gcm") ? GCM_IV_LENGTH : CTR_IV_LENGTH;
+
+        ExecutorService pool = newExecutor();
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(pool)
+            .build();
+        LatencyRecorder recorder = new LatencyRecorder();
+        LongAdder failures = new LongAdder();
+        AtomicReference<String> firstFailure = new AtomicReference<>();
+
+        System.out.println("Load: " + clients + " clients, " + seconds + " s, " + size + "-byte bodies, "
+            + keys + " keys, POST " + target);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Future<?>> running = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            final int clientId = c;
+            running.add(pool.submit(() -> {
+                byte[] iv = new byte[ivLength];
+                int k = clientId % keyPool.length;
+                while (System.nanoTime() < deadline) {
+                    ThreadLocalRandom.current().nextBytes(iv);
+                    HttpRequest request = HttpRequest.newBuilder(target)
+                        .header("X-AES-Key", AESHex.encode(keyPool[k]))
+                        .header("X-AES-IV", AESHex.encode(iv))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                        .build();
+                    long t = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) {
+                            failures.increment();
+                            firstFailure.compareAndSet(null, "HTTP " + response.statusCode());
+                        }
+                    } catch (IOException e) {
+                        failures.increment();
+                        firstFailure.compareAndSet(null, e.toString());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    recorder.record(System.nanoTime() - t);
+                    k = (k + 1) % keyPool.length;
+                }
+            }));
+        }
+        for (Future<?> f : running) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                failures.increment();
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        pool.shutdownNow();
+
+        long total = recorder.count();
+        long[] p = recorder.percentiles(0.50, 0.99);
+        PrintStream out = System.out;
+        out.printf("%d requests in %.1f s: %.0f req/s, %.1f MB/s, p50 %.2f ms, p99 %.2f ms, %d failed%n",
+            total, elapsed, total / elapsed, total * (double) size / 1e6 / elapsed,
+            p[0] / 1e6, p[1] / 1e6, failures.sum());
+        if (firstFailure.get() != null) {
+            out.println("First failure: " + firstFailure.get());
+        }
+        if (embedded != null) {
+            long[] s = embedded.latencies.percentiles(0.50, 0.99);
+            out.printf("Server (%s, %s): p50 %.2f ms, p99 %.2f ms, cache hits %d, misses %d%n",
+                embedded.executorName(), AESMultiBlock.engineName(), s[0] / 1e6, s[1] / 1e6,
+                embedded.cache.getHits(), embedded.cache.getMisses());
+            embedded.stop();
+        }
+        return failures.sum() == 0 ? 0 : 1;
+    }
+
+    // ---------------------------------------------------------------------
+    // Hexadecimal
+    // ---------------------------------------------------------------------
+
+    /**
+     * @return Los bytes del texto hexadecimal, o null si no es válido
+     */
+    private static byte[] parseHex(String hex) {
+        try {
+            return AESHex.decode(hex);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int usage(String message) {
+        System.err.println("Error: " + message);
+        System.err.println("Usage: java AESService [--port N] [--cache N]");
+        System.err.println("       java AESService --load [--url URL] [--clients N] [--seconds N] [--size N]"
+            + " [--path /ctr/encrypt|/ctr/decrypt|/gcm/encrypt] [--keys N]");
+        return 1;
+    }
+}
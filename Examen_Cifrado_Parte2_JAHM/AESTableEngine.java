@@ -0,0 +1,545 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ruta rápida de cifrado AES basada en tablas T (palabras de 32 bits)
+ * Basado en las especificaciones FIPS-197 y en la propuesta original de Rijndael
+ *
+ * SubBytes, ShiftRows y MixColumns se fusionan en cuatro tablas de 256
+ * entradas precalculadas a partir de la S-box, y el estado se mantiene en
+ * cuatro variables int (una por columna, fila 0 en el byte más significativo).
+ * Cada ronda se reduce a 16 búsquedas en tabla y 16 XOR, sin crear objetos.
+ * El resultado es idéntico al de {@link AESEngine#encryptBlock(AESKey, byte[])}.
+ * Para bloques independientes (ECB, CTR, descifrado CBC), {@link #encryptBlocks}
+ * y {@link #decryptBlocks} avanzan cuatro estados a la vez en cada ronda. Las
+ * sobrecargas con ByteBuffer leen y escriben palabras directamente en buffers
+ * directos o mapeados, sin pasar los datos por el heap.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESTableEngine {
+
+    // Tablas T: T0[x] = (02·S[x], S[x], S[x], 03·S[x]) y sus rotaciones de un byte
+    private static final int[] T0 = new int[256];
+    private static final int[] T1 = new int[256];
+    private static final int[] T2 = new int[256];
+    private static final int[] T3 = new int[256];
+
+    // Tablas inversas: TD0[x] = (0e·Si[x], 09·Si[x], 0d·Si[x], 0b·Si[x]) y sus rotaciones
+    private static final int[] TD0 = new int[256];
+    private static final int[] TD1 = new int[256];
+    private static final int[] TD2 = new int[256];
+    private static final int[] TD3 = new int[256];
+
+    // Bloques que encryptBlocks/decryptBlocks procesan entrelazados en cada ronda
+    private static final int INTERLEAVE = 4;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int s = AESEngine.SBOX[i];
+            int t = (AESEngine.MUL2[s] << 24) | (s << 16) | (s << 8) | AESEngine.MUL3[s];
+            T0[i] = t;
+            T1[i] = Integer.rotateRight(t, 8);
+            T2[i] = Integer.rotateRight(t, 16);
+            T3[i] = Integer.rotateRight(t, 24);
+
+            int si = AESEngine.INV_SBOX[i];
+            int d = (AESEngine.MUL14[si] << 24) | (AESEngine.MUL9[si] << 16)
+                  | (AESEngine.MUL13[si] << 8) | AESEngine.MUL11[si];
+            TD0[i] = d;
+            TD1[i] = Integer.rotateRight(d, 8);
+            TD2[i] = Integer.rotateRight(d, 16);
+            TD3[i] = Integer.rotateRight(d, 24);
+        }
+    }
+
+    private AESTableEngine() {
+        // Clase de utilidades, no se instancia
+    }
+
+    /**
+     * Cifra un bloque de 16 bytes con la ruta de tablas T
+     * @param key La clave expandida
+     * @param plaintext El texto plano de 16 bytes para cifrar
+     * @return El texto cifrado de 16 bytes
+     */
+    public static byte[] encryptBlock(AESKey key, byte[] plaintext) {
+        byte[] output = new byte[AESEngine.BLOCK_SIZE];
+        encryptBlock(key, plaintext, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Cifra un bloque de 16 bytes desde {@code in[inOff]} hacia {@code out[outOff]}
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento del bloque de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento del bloque de salida
+     */
+    public static void encryptBlock(AESKey key, byte[] in, int inOff, byte[] out, int outOff) {
+        final int[] rk = key.w;
+        final int nr = key.nr;
+
+        // Ronda inicial (solo AddRoundKey)
+        int s0 = getWord(in, inOff) ^ rk[0];
+        int s1 = getWord(in, inOff + 4) ^ rk[1];
+        int s2 = getWord(in, inOff + 8) ^ rk[2];
+        int s3 = getWord(in, inOff + 12) ^ rk[3];
+
+        // Rondas principales: SubBytes + ShiftRows + MixColumns + AddRoundKey
+        int k = 4;
+        for (int round = 1; round < nr; round++) {
+            int t0 = T0[s0 >>> 24] ^ T1[(s1 >>> 16) & 0xFF] ^ T2[(s2 >>> 8) & 0xFF] ^ T3[s3 & 0xFF] ^ rk[k];
+            int t1 = T0[s1 >>> 24] ^ T1[(s2 >>> 16) & 0xFF] ^ T2[(s3 >>> 8) & 0xFF] ^ T3[s0 & 0xFF] ^ rk[k + 1];
+            int t2 = T0[s2 >>> 24] ^ T1[(s3 >>> 16) & 0xFF] ^ T2[(s0 >>> 8) & 0xFF] ^ T3[s1 & 0xFF] ^ rk[k + 2];
+            int t3 = T0[s3 >>> 24] ^ T1[(s0 >>> 16) & 0xFF] ^ T2[(s1 >>> 8) & 0xFF] ^ T3[s2 & 0xFF] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += 4;
+        }
+
+        // Ronda final (sin MixColumns): se usa la S-box directamente
+        putWord(finalRound(s0, s1, s2, s3) ^ rk[k], out, outOff);
+        putWord(finalRound(s1, s2, s3, s0) ^ rk[k + 1], out, outOff + 4);
+        putWord(finalRound(s2, s3, s0, s1) ^ rk[k + 2], out, outOff + 8);
+        putWord(finalRound(s3, s0, s1, s2) ^ rk[k + 3], out, outOff + 12);
+    }
+
+    /**
+     * Descifra un bloque de 16 bytes con el cifrado inverso equivalente
+     * @param key La clave expandida
+     * @param ciphertext El texto cifrado de 16 bytes
+     * @return El texto plano de 16 bytes
+     */
+    public static byte[] decryptBlock(AESKey key, byte[] ciphertext) {
+        byte[] output = new byte[AESEngine.BLOCK_SIZE];
+        decryptBlock(key, ciphertext, 0, output, 0);
+        return output;
+    }
+
+    /**
+     * Descifra un bloque de 16 bytes desde {@code in[inOff]} hacia {@code out[outOff]}
+     * Usa el calendario inverso que {@link AESKey} calcula una sola vez y reutiliza.
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento del bloque de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento del bloque de salida
+     */
+    public static void decryptBlock(AESKey key, byte[] in, int inOff, byte[] out, int outOff) {
+        final int[] rk = key.decryptionWords();
+        final int nr = key.nr;
+
+        // Ronda inicial (solo AddRoundKey)
+        int s0 = getWord(in, inOff) ^ rk[0];
+        int s1 = getWord(in, inOff + 4) ^ rk[1];
+        int s2 = getWord(in, inOff + 8) ^ rk[2];
+        int s3 = getWord(in, inOff + 12) ^ rk[3];
+
+        // Rondas principales: InvSubBytes + InvShiftRows + InvMixColumns + AddRoundKey
+        int k = 4;
+        for (int round = 1; round < nr; round++) {
+            int t0 = TD0[s0 >>> 24] ^ TD1[(s3 >>> 16) & 0xFF] ^ TD2[(s2 >>> 8) & 0xFF] ^ TD3[s1 & 0xFF] ^ rk[k];
+            int t1 = TD0[s1 >>> 24] ^ TD1[(s0 >>> 16) & 0xFF] ^ TD2[(s3 >>> 8) & 0xFF] ^ TD3[s2 & 0xFF] ^ rk[k + 1];
+            int t2 = TD0[s2 >>> 24] ^ TD1[(s1 >>> 16) & 0xFF] ^ TD2[(s0 >>> 8) & 0xFF] ^ TD3[s3 & 0xFF] ^ rk[k + 2];
+            int t3 = TD0[s3 >>> 24] ^ TD1[(s2 >>> 16) & 0xFF] ^ TD2[(s1 >>> 8) & 0xFF] ^ TD3[s0 & 0xFF] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += 4;
+        }
+
+        // Ronda final (sin InvMixColumns): se usa la S-box inversa directamente
+        putWord(invFinalRound(s0, s3, s2, s1) ^ rk[k], out, outOff);
+        putWord(invFinalRound(s1, s0, s3, s2) ^ rk[k + 1], out, outOff + 4);
+        putWord(invFinalRound(s2, s1, s0, s3) ^ rk[k + 2], out, outOff + 8);
+        putWord(invFinalRound(s3, s2, s1, s0) ^ rk[k + 3], out, outOff + 12);
+    }
+
+    /**
+     * Cifra {@code len} bytes (múltiplo de 16) como bloques ECB independientes,
+     * de cuatro en cuatro: las búsquedas de los cuatro estados se entrelazan en
+     * cada ronda para que la CPU solape la latencia de las cargas de tabla.
+     * La cola de menos de cuatro bloques se cifra bloque a bloque.
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArrays(in, inOff, out, outOff, len);
+        final int[] rk = key.w;
+        final int nr = key.nr;
+
+        int off = 0;
+        for (; off + INTERLEAVE * AESEngine.BLOCK_SIZE <= len; off += INTERLEAVE * AESEngine.BLOCK_SIZE) {
+            int i = inOff + off;
+            int a0 = getWord(in, i) ^ rk[0];
+            int a1 = getWord(in, i + 4) ^ rk[1];
+            int a2 = getWord(in, i + 8) ^ rk[2];
+            int a3 = getWord(in, i + 12) ^ rk[3];
+            int b0 = getWord(in, i + 16) ^ rk[0];
+            int b1 = getWord(in, i + 20) ^ rk[1];
+            int b2 = getWord(in, i + 24) ^ rk[2];
+            int b3 = getWord(in, i + 28) ^ rk[3];
+            int c0 = getWord(in, i + 32) ^ rk[0];
+            int c1 = getWord(in, i + 36) ^ rk[1];
+            int c2 = getWord(in, i + 40) ^ rk[2];
+            int c3 = getWord(in, i + 44) ^ rk[3];
+            int d0 = getWord(in, i + 48) ^ rk[0];
+            int d1 = getWord(in, i + 52) ^ rk[1];
+            int d2 = getWord(in, i + 56) ^ rk[2];
+            int d3 = getWord(in, i + 60) ^ rk[3];
+
+            int k = 4;
+            for (int round = 1; round < nr; round++) {
+                int ta0 = T0[a0 >>> 24] ^ T1[(a1 >>> 16) & 0xFF] ^ T2[(a2 >>> 8) & 0xFF] ^ T3[a3 & 0xFF] ^ rk[k];
+                int ta1 = T0[a1 >>> 24] ^ T1[(a2 >>> 16) & 0xFF] ^ T2[(a3 >>> 8) & 0xFF] ^ T3[a0 & 0xFF] ^ rk[k + 1];
+                int ta2 = T0[a2 >>> 24] ^ T1[(a3 >>> 16) & 0xFF] ^ T2[(a0 >>> 8) & 0xFF] ^ T3[a1 & 0xFF] ^ rk[k + 2];
+                int ta3 = T0[a3 >>> 24] ^ T1[(a0 >>> 16) & 0xFF] ^ T2[(a1 >>> 8) & 0xFF] ^ T3[a2 & 0xFF] ^ rk[k + 3];
+                int tb0 = T0[b0 >>> 24] ^ T1[(b1 >>> 16) & 0xFF] ^ T2[(b2 >>> 8) & 0xFF] ^ T3[b3 & 0xFF] ^ rk[k];
+                int tb1 = T0[b1 >>> 24] ^ T1[(b2 >>> 16) & 0xFF] ^ T2[(b3 >>> 8) & 0xFF] ^ T3[b0 & 0xFF] ^ rk[k + 1];
+                int tb2 = T0[b2 >>> 24] ^ T1[(b3 >>> 16) & 0xFF] ^ T2[(b0 >>> 8) & 0xFF] ^ T3[b1 & 0xFF] ^ rk[k + 2];
+                int tb3 = T0[b3 >>> 24] ^ T1[(b0 >>> 16) & 0xFF] ^ T2[(b1 >>> 8) & 0xFF] ^ T3[b2 & 0xFF] ^ rk[k + 3];
+                int tc0 = T0[c0 >>> 24] ^ T1[(c1 >>> 16) & 0xFF] ^ T2[(c2 >>> 8) & 0xFF] ^ T3[c3 & 0xFF] ^ rk[k];
+                int tc1 = T0[c1 >>> 24] ^ T1[(c2 >>> 16) & 0xFF] ^ T2[(c3 >>> 8) & 0xFF] ^ T3[c0 & 0xFF] ^ rk[k + 1];
+                int tc2 = T0[c2 >>> 24] ^ T1[(c3 >>> 16) & 0xFF] ^ T2[(c0 >>> 8) & 0xFF] ^ T3[c1 & 0xFF] ^ rk[k + 2];
+                int tc3 = T0[c3 >>> 24] ^ T1[(c0 >>> 16) & 0xFF] ^ T2[(c1 >>> 8) & 0xFF] ^ T3[c2 & 0xFF] ^ rk[k + 3];
+                int td0 = T0[d0 >>> 24] ^ T1[(d1 >>> 16) & 0xFF] ^ T2[(d2 >>> 8) & 0xFF] ^ T3[d3 & 0xFF] ^ rk[k];
+                int td1 = T0[d1 >>> 24] ^ T1[(d2 >>> 16) & 0xFF] ^ T2[(d3 >>> 8) & 0xFF] ^ T3[d0 & 0xFF] ^ rk[k + 1];
+                int td2 = T0[d2 >>> 24] ^ T1[(d3 >>> 16) & 0xFF] ^ T2[(d0 >>> 8) & 0xFF] ^ T3[d1 & 0xFF] ^ rk[k + 2];
+                int td3 = T0[d3 >>> 24] ^ T1[(d0 >>> 16) & 0xFF] ^ T2[(d1 >>> 8) & 0xFF] ^ T3[d2 & 0xFF] ^ rk[k + 3];
+                a0 = ta0;
+                a1 = ta1;
+                a2 = ta2;
+                a3 = ta3;
+                b0 = tb0;
+                b1 = tb1;
+                b2 = tb2;
+                b3 = tb3;
+                c0 = tc0;
+                c1 = tc1;
+                c2 = tc2;
+                c3 = tc3;
+                d0 = td0;
+                d1 = td1;
+                d2 = td2;
+                d3 = td3;
+                k += 4;
+            }
+
+            int o = outOff + off;
+            putWord(finalRound(a0, a1, a2, a3) ^ rk[k], out, o);
+            putWord(finalRound(a1, a2, a3, a0) ^ rk[k + 1], out, o + 4);
+            putWord(finalRound(a2, a3, a0, a1) ^ rk[k + 2], out, o + 8);
+            putWord(finalRound(a3, a0, a1, a2) ^ rk[k + 3], out, o + 12);
+            putWord(finalRound(b0, b1, b2, b3) ^ rk[k], out, o + 16);
+            putWord(finalRound(b1, b2, b3, b0) ^ rk[k + 1], out, o + 20);
+            putWord(finalRound(b2, b3, b0, b1) ^ rk[k + 2], out, o + 24);
+            putWord(finalRound(b3, b0, b1, b2) ^ rk[k + 3], out, o + 28);
+            putWord(finalRound(c0, c1, c2, c3) ^ rk[k], out, o + 32);
+            putWord(finalRound(c1, c2, c3, c0) ^ rk[k + 1], out, o + 36);
+            putWord(finalRound(c2, c3, c0, c1) ^ rk[k + 2], out, o + 40);
+            putWord(finalRound(c3, c0, c1, c2) ^ rk[k + 3], out, o + 44);
+            putWord(finalRound(d0, d1, d2, d3) ^ rk[k], out, o + 48);
+            putWord(finalRound(d1, d2, d3, d0) ^ rk[k + 1], out, o + 52);
+            putWord(finalRound(d2, d3, d0, d1) ^ rk[k + 2], out, o + 56);
+            putWord(finalRound(d3, d0, d1, d2) ^ rk[k + 3], out, o + 60);
+        }
+
+        // Bloques restantes, uno a uno
+        for (; off < len; off += AESEngine.BLOCK_SIZE) {
+            encryptBlock(key, in, inOff + off, out, outOff + off);
+        }
+    }
+
+    /**
+     * Descifra {@code len} bytes (múltiplo de 16) como bloques ECB
+     * independientes, de cuatro en cuatro como {@link #encryptBlocks}
+     * @param key La clave expandida
+     * @param in Arreglo de entrada
+     * @param inOff Desplazamiento de entrada
+     * @param out Arreglo de salida (puede ser el mismo que la entrada)
+     * @param outOff Desplazamiento de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        checkArrays(in, inOff, out, outOff, len);
+        final int[] rk = key.decryptionWords();
+        final int nr = key.nr;
+
+        int off = 0;
+        for (; off + INTERLEAVE * AESEngine.BLOCK_SIZE <= len; off += INTERLEAVE * AESEngine.BLOCK_SIZE) {
+            int i = inOff + off;
+            int a0 = getWord(in, i) ^ rk[0];
+            int a1 = getWord(in, i + 4) ^ rk[1];
+            int a2 = getWord(in, i + 8) ^ rk[2];
+            int a3 = getWord(in, i + 12) ^ rk[3];
+            int b0 = getWord(in, i + 16) ^ rk[0];
+            int b1 = getWord(in, i + 20) ^ rk[1];
+            int b2 = getWord(in, i + 24) ^ rk[2];
+            int b3 = getWord(in, i + 28) ^ rk[3];
+            int c0 = getWord(in, i + 32) ^ rk[0];
+            int c1 = getWord(in, i + 36) ^ rk[1];
+            int c2 = getWord(in, i + 40) ^ rk[2];
+            int c3 = getWord(in, i + 44) ^ rk[3];
+            int d0 = getWord(in, i + 48) ^ rk[0];
+            int d1 = getWord(in, i + 52) ^ rk[1];
+            int d2 = getWord(in, i + 56) ^ rk[2];
+            int d3 = getWord(in, i + 60) ^ rk[3];
+
+            int k = 4;
+            for (int round = 1; round < nr; round++) {
+                int ta0 = TD0[a0 >>> 24] ^ TD1[(a3 >>> 16) & 0xFF] ^ TD2[(a2 >>> 8) & 0xFF] ^ TD3[a1 & 0xFF] ^ rk[k];
+                int ta1 = TD0[a1 >>> 24] ^ TD1[(a0 >>> 16) & 0xFF] ^ TD2[(a3 >>> 8) & 0xFF] ^ TD3[a2 & 0xFF] ^ rk[k + 1];
+                int ta2 = TD0[a2 >>> 24] ^ TD1[(a1 >>> 16) & 0xFF] ^ TD2[(a0 >>> 8) & 0xFF] ^ TD3[a3 & 0xFF] ^ rk[k + 2];
+                int ta3 = TD0[a3 >>> 24] ^ TD1[(a2 >>> 16) & 0xFF] ^ TD2[(a1 >>> 8) & 0xFF] ^ TD3[a0 & 0xFF] ^ rk[k + 3];
+                int tb0 = TD0[b0 >>> 24] ^ TD1[(b3 >>> 16) & 0xFF] ^ TD2[(b2 >>> 8) & 0xFF] ^ TD3[b1 & 0xFF] ^ rk[k];
+                int tb1 = TD0[b1 >>> 24] ^ TD1[(b0 >>> 16) & 0xFF] ^ TD2[(b3 >>> 8) & 0xFF] ^ TD3[b2 & 0xFF] ^ rk[k + 1];
+                int tb2 = TD0[b2 >>> 24] ^ TD1[(b1 >>> 16) & 0xFF] ^ TD2[(b0 >>> 8) & 0xFF] ^ TD3[b3 & 0xFF] ^ rk[k + 2];
+                int tb3 = TD0[b3 >>> 24] ^ TD1[(b2 >>> 16) & 0xFF] ^ TD2[(b1 >>> 8) & 0xFF] ^ TD3[b0 & 0xFF] ^ rk[k + 3];
+                int tc0 = TD0[c0 >>> 24] ^ TD1[(c3 >>> 16) & 0xFF] ^ TD2[(c2 >>> 8) & 0xFF] ^ TD3[c1 & 0xFF] ^ rk[k];
+                int tc1 = TD0[c1 >>> 24] ^ TD1[(c0 >>> 16) & 0xFF] ^ TD2[(c3 >>> 8) & 0xFF] ^ TD3[c2 & 0xFF] ^ rk[k + 1];
+                int tc2 = TD0[c2 >>> 24] ^ TD1[(c1 >>> 16) & 0xFF] ^ TD2[(c0 >>> 8) & 0xFF] ^ TD3[c3 & 0xFF] ^ rk[k + 2];
+                int tc3 = TD0[c3 >>> 24] ^ TD1[(c2 >>> 16) & 0xFF] ^ TD2[(c1 >>> 8) & 0xFF] ^ TD3[c0 & 0xFF] ^ rk[k + 3];
+                int td0 = TD0[d0 >>> 24] ^ TD1[(d3 >>> 16) & 0xFF] ^ TD2[(d2 >>> 8) & 0xFF] ^ TD3[d1 & 0xFF] ^ rk[k];
+                int td1 = TD0[d1 >>> 24] ^ TD1[(d0 >>> 16) & 0xFF] ^ TD2[(d3 >>> 8) & 0xFF] ^ TD3[d2 & 0xFF] ^ rk[k + 1];
+                int td2 = TD0[d2 >>> 24] ^ TD1[(d1 >>> 16) & 0xFF] ^ TD2[(d0 >>> 8) & 0xFF] ^ TD3[d3 & 0xFF] ^ rk[k + 2];
+                int td3 = TD0[d3 >>> 24] ^ TD1[(d2 >>> 16) & 0xFF] ^ TD2[(d1 >>> 8) & 0xFF] ^ TD3[d0 & 0xFF] ^ rk[k + 3];
+                a0 = ta0;
+                a1 = ta1;
+                a2 = ta2;
+                a3 = ta3;
+                b0 = tb0;
+                b1 = tb1;
+                b2 = tb2;
+                b3 = tb3;
+                c0 = tc0;
+                c1 = tc1;
+                c2 = tc2;
+                c3 = tc3;
+                d0 = td0;
+                d1 = td1;
+                d2 = td2;
+                d3 = td3;
+                k += 4;
+            }
+
+            int o = outOff + off;
+            putWord(invFinalRound(a0, a3, a2, a1) ^ rk[k], out, o);
+            putWord(invFinalRound(a1, a0, a3, a2) ^ rk[k + 1], out, o + 4);
+            putWord(invFinalRound(a2, a1, a0, a3) ^ rk[k + 2], out, o + 8);
+            putWord(invFinalRound(a3, a2, a1, a0) ^ rk[k + 3], out, o + 12);
+            putWord(invFinalRound(b0, b3, b2, b1) ^ rk[k], out, o + 16);
+            putWord(invFinalRound(b1, b0, b3, b2) ^ rk[k + 1], out, o + 20);
+            putWord(invFinalRound(b2, b1, b0, b3) ^ rk[k + 2], out, o + 24);
+            putWord(invFinalRound(b3, b2, b1, b0) ^ rk[k + 3], out, o + 28);
+            putWord(invFinalRound(c0, c3, c2, c1) ^ rk[k], out, o + 32);
+            putWord(invFinalRound(c1, c0, c3, c2) ^ rk[k + 1], out, o + 36);
+            putWord(invFinalRound(c2, c1, c0, c3) ^ rk[k + 2], out, o + 40);
+            putWord(invFinalRound(c3, c2, c1, c0) ^ rk[k + 3], out, o + 44);
+            putWord(invFinalRound(d0, d3, d2, d1) ^ rk[k], out, o + 48);
+            putWord(invFinalRound(d1, d0, d3, d2) ^ rk[k + 1], out, o + 52);
+            putWord(invFinalRound(d2, d1, d0, d3) ^ rk[k + 2], out, o + 56);
+            putWord(invFinalRound(d3, d2, d1, d0) ^ rk[k + 3], out, o + 60);
+        }
+
+        // Bloques restantes, uno a uno
+        for (; off < len; off += AESEngine.BLOCK_SIZE) {
+            decryptBlock(key, in, inOff + off, out, outOff + off);
+        }
+    }
+
+    /**
+     * Cifra un bloque de 16 bytes entre dos ByteBuffer (por ejemplo, directos)
+     * con índices absolutos, leyendo y escribiendo palabras big-endian sea cual
+     * sea el orden del buffer, sin copiar los datos a un arreglo ni mover la
+     * posición de los buffers
+     * @param key La clave expandida
+     * @param in Buffer de entrada
+     * @param inOff Índice absoluto del bloque de entrada
+     * @param out Buffer de salida (puede ser el mismo que la entrada)
+     * @param outOff Índice absoluto del bloque de salida
+     */
+    public static void encryptBlock(AESKey key, ByteBuffer in, int inOff, ByteBuffer out, int outOff) {
+        final int[] rk = key.w;
+        final int nr = key.nr;
+
+        // Ronda inicial (solo AddRoundKey)
+        int s0 = getWord(in, inOff) ^ rk[0];
+        int s1 = getWord(in, inOff + 4) ^ rk[1];
+        int s2 = getWord(in, inOff + 8) ^ rk[2];
+        int s3 = getWord(in, inOff + 12) ^ rk[3];
+
+        // Rondas principales: SubBytes + ShiftRows + MixColumns + AddRoundKey
+        int k = 4;
+        for (int round = 1; round < nr; round++) {
+            int t0 = T0[s0 >>> 24] ^ T1[(s1 >>> 16) & 0xFF] ^ T2[(s2 >>> 8) & 0xFF] ^ T3[s3 & 0xFF] ^ rk[k];
+            int t1 = T0[s1 >>> 24] ^ T1[(s2 >>> 16) & 0xFF] ^ T2[(s3 >>> 8) & 0xFF] ^ T3[s0 & 0xFF] ^ rk[k + 1];
+            int t2 = T0[s2 >>> 24] ^ T1[(s3 >>> 16) & 0xFF] ^ T2[(s0 >>> 8) & 0xFF] ^ T3[s1 & 0xFF] ^ rk[k + 2];
+            int t3 = T0[s3 >>> 24] ^ T1[(s0 >>> 16) & 0xFF] ^ T2[(s1 >>> 8) & 0xFF] ^ T3[s2 & 0xFF] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += 4;
+        }
+
+        // Ronda final (sin MixColumns): se usa la S-box directamente
+        putWord(finalRound(s0, s1, s2, s3) ^ rk[k], out, outOff);
+        putWord(finalRound(s1, s2, s3, s0) ^ rk[k + 1], out, outOff + 4);
+        putWord(finalRound(s2, s3, s0, s1) ^ rk[k + 2], out, outOff + 8);
+        putWord(finalRound(s3, s0, s1, s2) ^ rk[k + 3], out, outOff + 12);
+    }
+
+    /**
+     * Descifra un bloque de 16 bytes entre dos ByteBuffer con índices absolutos,
+     * como {@link #encryptBlock(AESKey, ByteBuffer, int, ByteBuffer, int)}
+     * @param key La clave expandida
+     * @param in Buffer de entrada
+     * @param inOff Índice absoluto del bloque de entrada
+     * @param out Buffer de salida (puede ser el mismo que la entrada)
+     * @param outOff Índice absoluto del bloque de salida
+     */
+    public static void decryptBlock(AESKey key, ByteBuffer in, int inOff, ByteBuffer out, int outOff) {
+        final int[] rk = key.decryptionWords();
+        final int nr = key.nr;
+
+        // Ronda inicial (solo AddRoundKey)
+        int s0 = getWord(in, inOff) ^ rk[0];
+        int s1 = getWord(in, inOff + 4) ^ rk[1];
+        int s2 = getWord(in, inOff + 8) ^ rk[2];
+        int s3 = getWord(in, inOff + 12) ^ rk[3];
+
+        // Rondas principales: InvSubBytes + InvShiftRows + InvMixColumns + AddRoundKey
+        int k = 4;
+        for (int round = 1; round < nr; round++) {
+            int t0 = TD0[s0 >>> 24] ^ TD1[(s3 >>> 16) & 0xFF] ^ TD2[(s2 >>> 8) & 0xFF] ^ TD3[s1 & 0xFF] ^ rk[k];
+            int t1 = TD0[s1 >>> 24] ^ TD1[(s0 >>> 16) & 0xFF] ^ TD2[(s3 >>> 8) & 0xFF] ^ TD3[s2 & 0xFF] ^ rk[k + 1];
+            int t2 = TD0[s2 >>> 24] ^ TD1[(s1 >>> 16) & 0xFF] ^ TD2[(s0 >>> 8) & 0xFF] ^ TD3[s3 & 0xFF] ^ rk[k + 2];
+            int t3 = TD0[s3 >>> 24] ^ TD1[(s2 >>> 16) & 0xFF] ^ TD2[(s1 >>> 8) & 0xFF] ^ TD3[s0 & 0xFF] ^ rk[k + 3];
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+            k += 4;
+        }
+
+        // Ronda final (sin InvMixColumns): se usa la S-box inversa directamente
+        putWord(invFinalRound(s0, s3, s2, s1) ^ rk[k], out, outOff);
+        putWord(invFinalRound(s1, s0, s3, s2) ^ rk[k + 1], out, outOff + 4);
+        putWord(invFinalRound(s2, s1, s0, s3) ^ rk[k + 2], out, outOff + 8);
+        putWord(invFinalRound(s3, s2, s1, s0) ^ rk[k + 3], out, outOff + 12);
+    }
+
+    /**
+     * Cifra {@code len} bytes (múltiplo de 16) como bloques ECB independientes
+     * entre dos ByteBuffer con índices absolutos
+     * @param key La clave expandida
+     * @param in Buffer de entrada
+     * @param inOff Índice absoluto de entrada
+     * @param out Buffer de salida (puede ser el mismo que la entrada)
+     * @param outOff Índice absoluto de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void encryptBlocks(AESKey key, ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+        checkBuffers(in, inOff, out, outOff, len);
+        for (int off = 0; off < len; off += AESEngine.BLOCK_SIZE) {
+            encryptBlock(key, in, inOff + off, out, outOff + off);
+        }
+    }
+
+    /**
+     * Descifra {@code len} bytes (múltiplo de 16) como bloques ECB
+     * independientes entre dos ByteBuffer con índices absolutos
+     * @param key La clave expandida
+     * @param in Buffer de entrada
+     * @param inOff Índice absoluto de entrada
+     * @param out Buffer de salida (puede ser el mismo que la entrada)
+     * @param outOff Índice absoluto de salida
+     * @param len Número de bytes, múltiplo de 16
+     */
+    public static void decryptBlocks(AESKey key, ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+        checkBuffers(in, inOff, out, outOff, len);
+        for (int off = 0; off < len; off += AESEngine.BLOCK_SIZE) {
+            decryptBlock(key, in, inOff + off, out, outOff + off);
+        }
+    }
+
+    private static void checkArrays(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        if (len % AESEngine.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Input length not multiple of 16 bytes.");
+        }
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.length - len || outOff > out.length - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+    }
+
+    private static void checkBuffers(ByteBuffer in, int inOff, ByteBuffer out, int outOff, int len) {
+        if (len % AESEngine.BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("Input length not multiple of 16 bytes.");
+        }
+        if (len < 0 || inOff < 0 || outOff < 0 || inOff > in.limit() - len || outOff > out.limit() - len) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+    }
+
+    /**
+     * SubBytes + ShiftRows de una columna de la ronda final
+     */
+    private static int finalRound(int a, int b, int c, int d) {
+        return (AESEngine.SBOX[a >>> 24] << 24)
+             | (AESEngine.SBOX[(b >>> 16) & 0xFF] << 16)
+             | (AESEngine.SBOX[(c >>> 8) & 0xFF] << 8)
+             | AESEngine.SBOX[d & 0xFF];
+    }
+
+    /**
+     * InvSubBytes + InvShiftRows de una columna de la ronda final
+     */
+    private static int invFinalRound(int a, int b, int c, int d) {
+        return (AESEngine.INV_SBOX[a >>> 24] << 24)
+             | (AESEngine.INV_SBOX[(b >>> 16) & 0xFF] << 16)
+             | (AESEngine.INV_SBOX[(c >>> 8) & 0xFF] << 8)
+             | AESEngine.INV_SBOX[d & 0xFF];
+    }
+
+    /**
+     * Leer una palabra de 32 bits en orden big-endian
+     */
+    static int getWord(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+             | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    /**
+     * Escribir una palabra de 32 bits en orden big-endian
+     */
+    static void putWord(int word, byte[] b, int off) {
+        b[off] = (byte) (word >>> 24);
+        b[off + 1] = (byte) (word >>> 16);
+        b[off + 2] = (byte) (word >>> 8);
+        b[off + 3] = (byte) word;
+    }
+
+    /**
+     * Leer una palabra big-endian de un ByteBuffer, sea cual sea su orden
+     */
+    static int getWord(ByteBuffer b, int off) {
+        int word = b.getInt(off);
+        return b.order() == ByteOrder.BIG_ENDIAN ? word : Integer.reverseBytes(word);
+    }
+
+    /**
+     * Escribir una palabra big-endian en un ByteBuffer, sea cual sea su orden
+     */
+    static void putWord(int word, ByteBuffer b, int off) {
+        b.putInt(off, b.order() == ByteOrder.BIG_ENDIAN ? word : Integer.reverseBytes(word));
+    }
+}
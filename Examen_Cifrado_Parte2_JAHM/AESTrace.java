@@ -0,0 +1,96 @@
+import java.util.Arrays;
+
+/**
+ * Traza compacta de los estados intermedios del cifrado por bloques
+ *
+ * Cada instantánea son los 16 bytes del estado en orden por columnas, guardados
+ * uno tras otro en un único arreglo que crece por duplicación: no se crean
+ * cadenas ni matrices por paso, así que trazar muchos bloques cuesta 16 bytes
+ * por paso. Las etiquetas y el texto hexadecimal los genera la interfaz solo
+ * cuando muestra una instantánea.
+ *
+ * Orden de las instantáneas de un bloque cifrado ({@link #snapshotsPerBlock(int)} en total):
+ * entrada, AddRoundKey inicial, luego por cada ronda 1..Nr-1 SubBytes, ShiftRows,
+ * MixColumns y AddRoundKey, y en la ronda final SubBytes, ShiftRows y AddRoundKey.
+ * El descifrado sigue el mismo esquema con InvShiftRows, InvSubBytes, AddRoundKey
+ * e InvMixColumns.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+public final class AESTrace {
+
+    private static final int SNAPSHOT = AESEngine.BLOCK_SIZE;
+
+    private byte[] data;
+    private int count;      // Número de instantáneas guardadas
+
+    public AESTrace() {
+        this(64);
+    }
+
+    /**
+     * @param initialSnapshots Capacidad inicial en instantáneas
+     */
+    public AESTrace(int initialSnapshots) {
+        data = new byte[Math.max(1, initialSnapshots) * SNAPSHOT];
+    }
+
+    /**
+     * @param nr Número de rondas
+     * @return Instantáneas que deja el cifrado o descifrado de un bloque (4·Nr + 1)
+     */
+    public static int snapshotsPerBlock(int nr) {
+        return 4 * nr + 1;
+    }
+
+    /**
+     * Añade una copia del estado actual
+     */
+    void record(byte[] block, int off) {
+        int end = (count + 1) * SNAPSHOT;
+        if (end > data.length) {
+            if (data.length > Integer.MAX_VALUE / 2 - SNAPSHOT) {
+                throw new IllegalStateException("Trace too large.");
+            }
+            data = Arrays.copyOf(data, Math.max(end, data.length * 2));
+        }
+        System.arraycopy(block, off, data, count * SNAPSHOT, SNAPSHOT);
+        count++;
+    }
+
+    /**
+     * @return Número de instantáneas guardadas
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param snapshot Índice de la instantánea
+     * @param index Índice del byte en orden por columnas (4·c + r)
+     * @return Valor del byte sin signo
+     */
+    public int get(int snapshot, int index) {
+        if (snapshot < 0 || snapshot >= count) {
+            throw new IndexOutOfBoundsException("Snapshot " + snapshot + " out of range.");
+        }
+        return data[snapshot * SNAPSHOT + index] & 0xFF;
+    }
+
+    /**
+     * Copia una instantánea de 16 bytes en {@code dst[dstOff]}
+     */
+    public void copySnapshot(int snapshot, byte[] dst, int dstOff) {
+        if (snapshot < 0 || snapshot >= count) {
+            throw new IndexOutOfBoundsException("Snapshot " + snapshot + " out of range.");
+        }
+        System.arraycopy(data, snapshot * SNAPSHOT, dst, dstOff, SNAPSHOT);
+    }
+
+    /**
+     * Descarta las instantáneas sin liberar la memoria reservada
+     */
+    public void clear() {
+        count = 0;
+    }
+}
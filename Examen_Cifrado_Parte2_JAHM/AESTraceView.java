@@ -0,0 +1,280 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Vista virtualizada de una traza de cifrado o descifrado
+ *
+ * Cada fila de la lista es una ronda de un bloque y se dibuja directamente con
+ * Graphics2D: no hay un JPanel ni 16 JLabel por estado. Como la altura de fila
+ * es fija, JList solo pide pintar las filas visibles, así que una traza de
+ * miles de rondas (varios bloques CBC o CTR) ocupa solo los bytes de la traza.
+ * Colores, fuentes y textos hexadecimales se crean una sola vez.
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+final class AESTraceView extends JList<Integer> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Color BACKGROUND = new Color(25, 35, 45);
+    private static final Color STATE_BG = new Color(30, 40, 50);
+    private static final Color BORDER = new Color(60, 70, 80);
+
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Font LABEL_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Font CELL_FONT = new Font("Monospaced", Font.BOLD, 12);
+    private static final Font ARROW_FONT = new Font("Arial", Font.BOLD, 16);
+
+    // Geometría de una fila
+    private static final int CELL = 30;
+    private static final int GAP = 2;
+    private static final int GRID = 4 * CELL + 3 * GAP;
+    private static final int STATE_WIDTH = GRID + 10;
+    private static final int ARROW_WIDTH = 30;
+    private static final int MAX_STATES = 6;
+    private static final int ROW_HEIGHT = 200;
+    private static final int ROW_WIDTH = 20 + MAX_STATES * STATE_WIDTH + (MAX_STATES - 1) * ARROW_WIDTH;
+
+    // Títulos de los estados de cada tipo de fila
+    private static final String[] INITIAL_LABELS = {"Start", "Round Key", "AddRoundKey"};
+    private static final String[] ROUND_LABELS = {"Start", "SubBytes", "ShiftRows", "MixColumns", "Round Key", "AddRoundKey"};
+    private static final String[] FINAL_LABELS = {"Start", "SubBytes", "ShiftRows", "Round Key", "Ciphertext"};
+    private static final String[] INV_ROUND_LABELS = {"Start", "InvShiftRows", "InvSubBytes", "Round Key", "AddRoundKey", "InvMixColumns"};
+    private static final String[] INV_FINAL_LABELS = {"Start", "InvShiftRows", "InvSubBytes", "Round Key", "Plaintext"};
+    private static final String[] OUTPUT_LABELS = {"Final State"};
+
+    // Color de fondo y texto hexadecimal de cada valor de byte
+    private static final Color[] CELL_COLORS = new Color[256];
+    private static final String[] HEX = new String[256];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            if (value < 64) {
+                // Tonos de azul oscuro
+                CELL_COLORS[value] = new Color(20 + value, 30 + value/2, 50 + value);
+            } else if (value < 128) {
+                // Tonos de verde militar
+                CELL_COLORS[value] = new Color(30 + (value-64)/2, 50 + (value-64), 30);
+            } else if (value < 192) {
+                // Tonos de gris acero
+                CELL_COLORS[value] = new Color(60 + (value-128)/2, 70 + (value-128)/2, 80 + (value-128)/2);
+            } else {
+                // Tonos de rojo oscuro
+                CELL_COLORS[value] = new Color(100 + (value-192), 30 + (value-192)/3, 30);
+            }
+            HEX[value] = AESHex.appendByte(new StringBuilder(2), value).toString();
+        }
+    }
+
+    private AESTrace trace;
+    private AESKey key;
+    private boolean decrypting;
+    private int rowsPerBlock;
+    private int rows;
+    private final TraceModel model = new TraceModel();
+
+    AESTraceView() {
+        setModel(model);
+        setFixedCellHeight(ROW_HEIGHT);
+        setFixedCellWidth(ROW_WIDTH);
+        setBackground(BACKGROUND);
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setCellRenderer(new RoundRenderer());
+    }
+
+    /**
+     * Muestra una traza; cada bloque ocupa Nr + 2 filas
+     * @param decrypting true si la traza viene del cifrado inverso
+     */
+    void setTrace(AESTrace trace, AESKey key, boolean decrypting) {
+        this.trace = trace;
+        this.key = key;
+        this.decrypting = decrypting;
+        this.rowsPerBlock = key.nr + 2;
+        int blocks = trace.size() / AESTrace.snapshotsPerBlock(key.nr);
+        setRows(blocks * rowsPerBlock);
+    }
+
+    /**
+     * Vacía la vista
+     */
+    void clearTrace() {
+        trace = null;
+        key = null;
+        setRows(0);
+    }
+
+    private void setRows(int newRows) {
+        int oldRows = rows;
+        rows = newRows;
+        clearSelection();
+        model.changed(oldRows);
+    }
+
+    /**
+     * Modelo sin elementos guardados: el elemento de cada fila es su índice
+     */
+    private final class TraceModel extends AbstractListModel<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int getSize() {
+            return rows;
+        }
+
+        @Override
+        public Integer getElementAt(int index) {
+            return index;
+        }
+
+        void changed(int oldRows) {
+            if (oldRows > 0) {
+                fireIntervalRemoved(this, 0, oldRows - 1);
+            }
+            if (rows > 0) {
+                fireIntervalAdded(this, 0, rows - 1);
+            }
+        }
+    }
+
+    /**
+     * Componente único que pinta cualquier fila; JList lo reutiliza como sello
+     */
+    private final class RoundRenderer extends JComponent implements ListCellRenderer<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private String title;
+        private String[] labels;
+        // Origen de cada estado: >= 0 instantánea de la traza; < 0 clave de ronda -(r + 1)
+        private final int[] sources = new int[MAX_STATES];
+
+        RoundRenderer() {
+            setOpaque(true);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Integer> list, Integer value,
+                                                      int index, boolean isSelected, boolean cellHasFocus) {
+            describeRow(index);
+            return this;
+        }
+
+        /**
+         * Calcula título, etiquetas y origen de cada estado de la fila
+         */
+        private void describeRow(int index) {
+            int nr = key.nr;
+            int block = index / rowsPerBlock;
+            int r = index % rowsPerBlock;
+            int base = block * AESTrace.snapshotsPerBlock(nr);
+            String prefix = trace.size() > AESTrace.snapshotsPerBlock(nr) ? "Block " + block + " · " : "";
+
+            if (r == 0) {
+                int roundKey = decrypting ? nr : 0;
+                title = "Initial Round (AddRoundKey" + (decrypting ? " " + nr : "") + ")";
+                labels = INITIAL_LABELS;
+                setSources(base, -(roundKey + 1), base + 1);
+            } else if (r == rowsPerBlock - 1) {
+                title = decrypting ? "Output (Plaintext)" : "Output (Ciphertext)";
+                labels = OUTPUT_LABELS;
+                setSources(base + 4 * nr);
+            } else if (!decrypting) {
+                int s = base + 1 + 4 * (r - 1);
+                if (r < nr) {
+                    title = "Round " + r;
+                    labels = ROUND_LABELS;
+                    setSources(s, s + 1, s + 2, s + 3, -(r + 1), s + 4);
+                } else {
+                    title = "Final Round (Round " + nr + ")";
+                    labels = FINAL_LABELS;
+                    setSources(s, s + 1, s + 2, -(nr + 1), s + 3);
+                }
+            } else {
+                int round = nr - r;
+                int s = base + 1 + 4 * (r - 1);
+                if (round > 0) {
+                    title = "Inverse Round " + round;
+                    labels = INV_ROUND_LABELS;
+                    setSources(s, s + 1, s + 2, -(round + 1), s + 3, s + 4);
+                } else {
+                    title = "Final Inverse Round (Round 0)";
+                    labels = INV_FINAL_LABELS;
+                    setSources(s, s + 1, s + 2, -1, s + 3);
+                }
+            }
+            title = prefix + title;
+        }
+
+        private void setSources(int... values) {
+            System.arraycopy(values, 0, sources, 0, values.length);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(BACKGROUND);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+
+            // Separador inferior como el borde de los antiguos paneles de ronda
+            g2.setColor(BORDER);
+            g2.drawLine(0, getHeight() - 1, getWidth(), getHeight() - 1);
+
+            g2.setFont(TITLE_FONT);
+            g2.setColor(Color.WHITE);
+            g2.drawString(title, 10, 24);
+
+            int x = 10;
+            for (int i = 0; i < labels.length; i++) {
+                if (i > 0) {
+                    g2.setFont(ARROW_FONT);
+                    g2.setColor(Color.WHITE);
+                    g2.drawString("→", x + 6, 40 + GRID / 2 + 20);
+                    x += ARROW_WIDTH;
+                }
+                paintState(g2, x, 40, labels[i], sources[i]);
+                x += STATE_WIDTH;
+            }
+            g2.dispose();
+        }
+
+        /**
+         * Dibuja una matriz de estados de 4x4 con su título
+         */
+        private void paintState(Graphics2D g2, int x, int y, String label, int source) {
+            g2.setColor(STATE_BG);
+            g2.fillRect(x, y, STATE_WIDTH, GRID + 36);
+            g2.setColor(BORDER);
+            g2.drawRect(x, y, STATE_WIDTH, GRID + 36);
+
+            g2.setFont(LABEL_FONT);
+            g2.setColor(Color.WHITE);
+            FontMetrics fm = g2.getFontMetrics();
+            g2.drawString(label, x + (STATE_WIDTH - fm.stringWidth(label)) / 2, y + 16);
+
+            g2.setFont(CELL_FONT);
+            fm = g2.getFontMetrics();
+            int gx = x + 5;
+            int gy = y + 24;
+            for (int r = 0; r < 4; r++) {
+                for (int c = 0; c < 4; c++) {
+                    // Estado en orden por columnas: fila r, columna c = byte 4c + r
+                    int value = source >= 0 ? trace.get(source, 4 * c + r)
+                                            : key.roundKeyByte(-source - 1, 4 * c + r);
+                    int cx = gx + c * (CELL + GAP);
+                    int cy = gy + r * (CELL + GAP);
+                    g2.setColor(CELL_COLORS[value]);
+                    g2.fillRect(cx, cy, CELL, CELL);
+                    g2.setColor(BORDER);
+                    g2.drawRect(cx, cy, CELL - 1, CELL - 1);
+                    g2.setColor(Color.WHITE);
+                    String hex = HEX[value];
+                    g2.drawString(hex, cx + (CELL - fm.stringWidth(hex)) / 2,
+                                  cy + (CELL - fm.getHeight()) / 2 + fm.getAscent());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Motor SIMD de AES con la API Vector del JDK (módulo incubadora jdk.incubator.vector)
+ * Basado en las especificaciones FIPS-197
+ *
+ * Cada vector de bytes contiene varios estados de 16 bytes consecutivos en el
+ * mismo orden que en memoria (byte 4c+r = fila r, columna c), de modo que las
+ * cuatro transformaciones de ronda se aplican a todos los bloques a la vez:
+ * AddRoundKey es un XOR con la subclave repetida en cada bloque, ShiftRows y
+ * las rotaciones de columna de MixColumns son permutaciones de carriles, y
+ * MixColumns usa xtime con desplazamientos y máscaras. La S-box se divide en
+ * tablas del ancho del vector; cada byte se busca en todas con una
+ * permutación y se queda con la que corresponde a sus bits altos.
+ *
+ * Requiere JDK 16 o posterior. Se compila aparte del resto del proyecto y
+ * {@link AESMultiBlock} lo carga por reflexión:
+ * <pre>
+ * javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp . -d . vector/AESVectorEngine.java
+ * java --add-modules jdk.incubator.vector AESKeyExpansionGUI
+ * </pre>
+ * @author José Angel Hernández Morales
+ * @version 3.0
+ */
+final class AESVectorEngine implements AESMultiBlock.Engine {
+
+    private static final int BLOCK = AESEngine.BLOCK_SIZE;
+
+    // Ancho preferido de la plataforma, como mínimo un bloque por vector
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() >= BLOCK
+        ? ByteVector.SPECIES_PREFERRED : ByteVector.SPECIES_128;
+    private static final int LANES = SPECIES.length();
+    private static final int LANE_BITS = Integer.numberOfTrailingZeros(LANES);
+
+    private static final ByteVector[] SBOX = tableVectors(AESEngine.SBOX);
+    private static final ByteVector[] INV_SBOX = tableVectors(AESEngine.INV_SBOX);
+
+    private static final VectorShuffle<Byte> SHIFT_ROWS = shuffle(1, 0);
+    private static final VectorShuffle<Byte> INV_SHIFT_ROWS = shuffle(-1, 0);
+    private static final VectorShuffle<Byte> ROT1 = shuffle(0, 1);
+    private static final VectorShuffle<Byte> ROT2 = shuffle(0, 2);
+    private static final VectorShuffle<Byte> ROT3 = shuffle(0, 3);
+
+    @Override
+    public String name() {
+        return "Vector API " + SPECIES.vectorBitSize() + "-bit";
+    }
+
+    @Override
+    public void encryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        byte[] rk = key.replicatedRoundKeys(LANES);
+        int nr = key.nr;
+        int off = 0;
+        for (; off + LANES <= len; off += LANES) {
+            ByteVector s = ByteVector.fromArray(SPECIES, in, inOff + off).lanewise(VectorOperators.XOR, roundKey(rk, 0));
+            for (int round = 1; round < nr; round++) {
+                s = mixColumns(substitute(s, SBOX).rearrange(SHIFT_ROWS)).lanewise(VectorOperators.XOR, roundKey(rk, round));
+            }
+            s = substitute(s, SBOX).rearrange(SHIFT_ROWS).lanewise(VectorOperators.XOR, roundKey(rk, nr));
+            s.intoArray(out, outOff + off);
+        }
+        // Cola de menos de un vector
+        AESTableEngine.encryptBlocks(key, in, inOff + off, out, outOff + off, len - off);
+    }
+
+    @Override
+    public void decryptBlocks(AESKey key, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        byte[] rk = key.replicatedRoundKeys(LANES);
+        int nr = key.nr;
+        int off = 0;
+        for (; off + LANES <= len; off += LANES) {
+            ByteVector s = ByteVector.fromArray(SPECIES, in, inOff + off).lanewise(VectorOperators.XOR, roundKey(rk, nr));
+            for (int round = nr - 1; round > 0; round--) {
+                s = substitute(s.rearrange(INV_SHIFT_ROWS), INV_SBOX).lanewise(VectorOperators.XOR, roundKey(rk, round));
+                s = invMixColumns(s);
+            }
+            s = substitute(s.rearrange(INV_SHIFT_ROWS), INV_SBOX).lanewise(VectorOperators.XOR, roundKey(rk, 0));
+            s.intoArray(out, outOff + off);
+        }
+        AESTableEngine.decryptBlocks(key, in, inOff + off, out, outOff + off, len - off);
+    }
+
+    /**
+     * SubBytes: cada tabla cubre LANES valores consecutivos; los bits bajos
+     * eligen el carril y los altos deciden qué tabla se conserva
+     */
+    private static ByteVector substitute(ByteVector s, ByteVector[] table) {
+        VectorShuffle<Byte> index = s.lanewise(VectorOperators.AND, (byte) (LANES - 1)).toShuffle();
+        ByteVector high = s.lanewise(VectorOperators.LSHR, LANE_BITS);
+        ByteVector result = table[0].rearrange(index);
+        for (int t = 1; t < table.length; t++) {
+            result = result.blend(table[t].rearrange(index), high.eq((byte) t));
+        }
+        return result;
+    }
+
+    /**
+     * MixColumns: b[r] = 2·(a[r] ^ a[r+1]) ^ a[r+1] ^ a[r+2] ^ a[r+3]
+     */
+    private static ByteVector mixColumns(ByteVector a) {
+        ByteVector a1 = a.rearrange(ROT1);
+        ByteVector rest = a1.lanewise(VectorOperators.XOR, a.rearrange(ROT2))
+            .lanewise(VectorOperators.XOR, a.rearrange(ROT3));
+        return xtime(a.lanewise(VectorOperators.XOR, a1)).lanewise(VectorOperators.XOR, rest);
+    }
+
+    /**
+     * InvMixColumns como MixColumns tras sumar 4·(a[r] ^ a[r+2]) a cada byte
+     */
+    private static ByteVector invMixColumns(ByteVector a) {
+        ByteVector u = xtime(xtime(a.lanewise(VectorOperators.XOR, a.rearrange(ROT2))));
+        return mixColumns(a.lanewise(VectorOperators.XOR, u));
+    }
+
+    /**
+     * Multiplicación por x en GF(2^8): desplazamiento y reducción con 0x1B si el bit alto estaba activo
+     */
+    private static ByteVector xtime(ByteVector v) {
+        ByteVector reduce = v.lanewise(VectorOperators.ASHR, 7).lanewise(VectorOperators.AND, (byte) 0x1B);
+        return v.lanewise(VectorOperators.LSHL, 1).lanewise(VectorOperators.XOR, reduce);
+    }
+
+    /**
+     * Subclave de una ronda repetida una vez por bloque del vector. Las
+     * subclaves se guardan como bytes en la clave ({@link AESKey#replicatedRoundKeys})
+     * y se cargan en cada ronda: un arreglo de vectores obligaría a
+     * materializarlos como objetos en el montón.
+     */
+    private static ByteVector roundKey(byte[] lanes, int round) {
+        return ByteVector.fromArray(SPECIES, lanes, round * LANES);
+    }
+
+    private static ByteVector[] tableVectors(int[] table) {
+        ByteVector[] vectors = new ByteVector[256 / LANES];
+        byte[] lanes = new byte[LANES];
+        for (int t = 0; t < vectors.length; t++) {
+            for (int i = 0; i < LANES; i++) {
+                lanes[i] = (byte) table[t * LANES + i];
+            }
+            vectors[t] = ByteVector.fromArray(SPECIES, lanes, 0);
+        }
+        return vectors;
+    }
+
+    /**
+     * Permutación dentro de cada bloque: el byte (r, c) toma el de la fila
+     * r + rowStep y la columna c + r·columnStep, ambos módulo 4
+     */
+    private static VectorShuffle<Byte> shuffle(int columnStep, int rowStep) {
+        int[] source = new int[LANES];
+        for (int i = 0; i < LANES; i++) {
+            int base = i & ~(BLOCK - 1);
+            int r = i & 3;
+            int c = (i >> 2) & 3;
+            source[i] = base + 4 * ((c + r * columnStep + 4) & 3) + ((r + rowStep) & 3);
+        }
+        return VectorShuffle.fromArray(SPECIES, source, 0);
+    }
+}